@@ -0,0 +1,408 @@
+package dfa2;
+
+import java.util.Arrays;
+
+/**
+ * Simulazione diretta di un {@link NFA}, senza costruire il DFA equivalente.
+ * L'insieme degli stati attivi e` un vettore di bit in un array di
+ * <code>long</code>; per ogni simbolo (o minterm, se l'automa ha transizioni
+ * su intervalli) si conosce l'insieme degli stati che hanno una mossa con quel
+ * simbolo. Come in {@link ShiftAnd}, gli stati sono divisi in gruppi di otto
+ * e per ogni minterm e ogni gruppo una tabella di 256 elementi da`, per ogni
+ * sottoinsieme del gruppo, l'unione delle epsilon chiusure degli stati di
+ * arrivo. Leggere un carattere costa quindi al piu` n/8 unioni di vettori di
+ * n bit, una per gruppo invece di una per stato attivo, e riconoscere una
+ * stringa di lunghezza m costa O(n&middot;m/8) unioni qualunque sia l'automa,
+ * anche quando la costruzione dei sottoinsiemi produrrebbe un numero
+ * esponenziale di stati (ad esempio per {@link NFA#nth(int)}).
+ *
+ * Una tabella puo` occupare fino a 32 volte la memoria dei vettori delle
+ * mosse dei suoi otto stati. Tutto cio` che le tabelle allocano (gli array di
+ * riferimenti, le unioni e le copie per gli intervalli sovrapposti) e`
+ * limitato a {@link #MAX_TABLE_WORDS} parole in tutto: i gruppi che non
+ * rientrano non hanno tabella e il passo unisce uno alla volta i vettori
+ * delle mosse dei loro stati attivi, che servono comunque a costruire le
+ * tabelle. Oltre a questi vettori la memoria resta quindi limitata qualunque
+ * sia il numero di stati, di minterm o di intervalli.
+ *
+ * Un oggetto di questa classe non viene modificato dopo la costruzione ed e`
+ * thread-safe.
+ *
+ * @author SashaAlexandru
+ */
+public final class BitNFA implements Recognizer {
+
+    /**
+     * Blocco condiviso per tutti i caratteri che non compaiono nell'alfabeto.
+     */
+    private static final int[] EMPTY_BLOCK = new int[256];
+
+    static {
+        Arrays.fill(EMPTY_BLOCK, -1);
+    }
+
+    /**
+     * Numero massimo di parole (<code>long</code> o riferimenti) allocate per
+     * le tabelle dei gruppi (al piu` 32 MB).
+     */
+    private static final long MAX_TABLE_WORDS = 1L << 22;
+
+    /**
+     * Numero degli stati dell'automa.
+     */
+    private final int numberOfStates;
+    /**
+     * Numero di parole di un insieme di stati.
+     */
+    private final int words;
+    /**
+     * <code>blocks[ch &gt;&gt;&gt; 8][ch &amp; 0xFF]</code> e` l'indice del
+     * minterm di ch, oppure -1 se nessuna transizione legge ch.
+     */
+    private final int[][] blocks;
+    /**
+     * <code>active[s]</code> e` l'insieme degli stati che hanno una mossa con
+     * i caratteri del minterm di indice s.
+     */
+    private final long[][] active;
+    /**
+     * L'indice delle transizioni dell'automa simulato, usato dal passo per i
+     * gruppi senza tabella.
+     */
+    private final NFA.Index index;
+    /**
+     * <code>successors[k]</code> e` l'epsilon chiusura degli stati di arrivo
+     * della mossa k dell'indice, null per le epsilon transizioni.
+     */
+    private final long[][] successors;
+    /**
+     * <code>rangeSuccessors[j]</code> e` l'epsilon chiusura dello stato di
+     * arrivo della transizione su intervallo j dell'indice.
+     */
+    private final long[][] rangeSuccessors;
+    /**
+     * <code>tables[s][c][b]</code> e` l'unione delle epsilon chiusure degli
+     * stati di arrivo leggendo un carattere del minterm s dagli stati
+     * <code>8c + j</code> per ogni bit j di b, dove b e` contenuto nel gruppo
+     * c di <code>active[s]</code>. <code>tables[s]</code> e`
+     * <code>tables[s][c]</code> sono null se nessuno stato del gruppo ha una
+     * mossa con il minterm oppure se la tabella non rientra nel budget.
+     */
+    private final long[][][][] tables;
+    /**
+     * Epsilon chiusura dello stato iniziale.
+     */
+    private final long[] initial;
+    /**
+     * Insieme degli stati finali.
+     */
+    private final long[] finalStates;
+
+    /**
+     * Prepara la simulazione di un automa. Le modifiche successive
+     * dell'automa non si riflettono sulla simulazione.
+     *
+     * @param nfa L'automa da simulare, con stato iniziale 0
+     */
+    public BitNFA(NFA nfa) {
+        numberOfStates = nfa.numberOfStates();
+        words = Math.max(1, (numberOfStates + 63) >>> 6);
+        index = nfa.index();
+        final char[] minterms = index.minterms;
+        final int count = minterms.length / 2;
+
+        blocks = new int[256][];
+        Arrays.fill(blocks, EMPTY_BLOCK);
+        //uniform[s] e` il blocco condiviso con tutti i caratteri del minterm s
+        int[][] uniform = new int[count][];
+        for (int s = 0; s < count; s++) {
+            final int lo = minterms[2 * s];
+            final int hi = minterms[2 * s + 1];
+            for (int b = lo >>> 8; b <= hi >>> 8; b++) {
+                final int from = Math.max(lo, b << 8);
+                final int to = Math.min(hi, b << 8 | 0xFF);
+                if (to - from == 0xFF) {
+                    if (uniform[s] == null) {
+                        uniform[s] = new int[256];
+                        Arrays.fill(uniform[s], s);
+                    }
+                    blocks[b] = uniform[s];
+                } else {
+                    if (blocks[b] == EMPTY_BLOCK) {
+                        blocks[b] = EMPTY_BLOCK.clone();
+                    }
+                    Arrays.fill(blocks[b], from & 0xFF, (to & 0xFF) + 1, s);
+                }
+            }
+        }
+
+        //epsilon chiusura degli stati di arrivo di ogni mossa e di ogni
+        //transizione su intervallo
+        active = new long[count][words];
+        successors = new long[index.labels.length][];
+        rangeSuccessors = new long[index.rangeTargets.length][];
+        for (int p = 0; p < numberOfStates; p++) {
+            for (int k = index.rowStart[p]; k < index.rowStart[p + 1]; k++) {
+                final char ch = index.labels[k];
+                if (ch == NFA.EPSILON) {
+                    continue;
+                }
+                set(active[blocks[ch >>> 8][ch & 0xFF]], p);
+                //se un arrivo e` gia` nell'unione lo e` anche la sua chiusura
+                long[] next = new long[words];
+                for (int i = index.targetStart[k]; i < index.targetStart[k + 1]; i++) {
+                    if (!contains(next, index.targets[i])) {
+                        for (int q : index.closure(index.targets[i])) {
+                            set(next, q);
+                        }
+                    }
+                }
+                successors[k] = next;
+            }
+            for (int j = index.rangeStart[p]; j < index.rangeStart[p + 1]; j++) {
+                //l'intervallo e` unione di minterm consecutivi
+                final char lo = index.rangeLo[j];
+                for (int s = blocks[lo >>> 8][lo & 0xFF]; s < count && minterms[2 * s + 1] <= index.rangeHi[j]; s++) {
+                    set(active[s], p);
+                }
+                long[] next = new long[words];
+                for (int q : index.closure(index.rangeTargets[j])) {
+                    set(next, q);
+                }
+                rangeSuccessors[j] = next;
+            }
+        }
+
+        //tabelle dei gruppi: gli elementi con un bit sono i vettori dei
+        //singoli stati, gli altri si costruiscono in ordine crescente perche'
+        //b & (b - 1) precede b. Una tabella si costruisce solo se tutto cio`
+        //che alloca rientra nel budget.
+        final int groups = (numberOfStates + 7) >>> 3;
+        tables = new long[count][][][];
+        long budget = MAX_TABLE_WORDS;
+        for (int s = 0; s < count; s++) {
+            final char ch = minterms[2 * s];
+            for (int c = 0; c < groups; c++) {
+                final int mask = (int) (active[s][c >>> 3] >>> ((c & 7) << 3)) & 0xFF;
+                if (mask == 0) {
+                    continue;
+                }
+                final int bits = Integer.bitCount(mask);
+                int copies = 0;
+                for (int b = mask; b != 0; b &= b - 1) {
+                    if (moves(c << 3 | Integer.numberOfTrailingZeros(b), ch) > 1) {
+                        copies++;
+                    }
+                }
+                long cost = 256 + (long) ((1 << bits) - bits - 1 + copies) * words;
+                if (tables[s] == null) {
+                    cost += groups;
+                }
+                if (cost > budget) {
+                    continue;
+                }
+                budget -= cost;
+                if (tables[s] == null) {
+                    tables[s] = new long[groups][][];
+                }
+                long[][] table = new long[256][];
+                for (int b = mask; b != 0; b &= b - 1) {
+                    table[b & -b] = successor(c << 3 | Integer.numberOfTrailingZeros(b), ch);
+                }
+                for (int b = 3; b <= mask; b++) {
+                    if ((b & ~mask) == 0 && (b & (b - 1)) != 0) {
+                        long[] union = table[b & (b - 1)].clone();
+                        or(union, table[b & -b]);
+                        table[b] = union;
+                    }
+                }
+                tables[s][c] = table;
+            }
+        }
+
+        initial = new long[words];
+        if (numberOfStates > 0) {
+            for (int q : index.closure(0)) {
+                set(initial, q);
+            }
+        }
+        finalStates = new long[words];
+        for (int p = 0; p < numberOfStates; p++) {
+            if (nfa.finalState(p)) {
+                set(finalStates, p);
+            }
+        }
+    }
+
+    /**
+     * Restituisce il numero di stati dell'automa simulato.
+     *
+     * @return Numero di stati
+     */
+    public int numberOfStates() {
+        return numberOfStates;
+    }
+
+    /**
+     * Riconosce una stringa simulando l'automa.
+     *
+     * @param s La stringa da riconoscere
+     * @return true se la stringa e` accettata
+     */
+    @Override
+    public boolean scan(CharSequence s) {
+        long[] current = initial.clone();
+        long[] next = new long[words];
+        for (int i = 0; i < s.length(); i++) {
+            if (!step(current, s.charAt(i), next)) {
+                return false;
+            }
+            long[] t = current;
+            current = next;
+            next = t;
+        }
+        return intersects(current, finalStates);
+    }
+
+    /**
+     * Riconosce la porzione <code>a[offset, offset + length)</code> di un
+     * array simulando l'automa.
+     *
+     * @param a L'array che contiene l'input
+     * @param offset L'indice del primo carattere da leggere
+     * @param length Il numero di caratteri da leggere
+     * @return true se la porzione e` accettata
+     * @throws IndexOutOfBoundsException se la porzione non e` contenuta in a
+     */
+    @Override
+    public boolean scan(char[] a, int offset, int length) {
+        CompiledDFA.checkSlice(a, offset, length);
+        long[] current = initial.clone();
+        long[] next = new long[words];
+        for (int i = offset; i < offset + length; i++) {
+            if (!step(current, a[i], next)) {
+                return false;
+            }
+            long[] t = current;
+            current = next;
+            next = t;
+        }
+        return intersects(current, finalStates);
+    }
+
+    /**
+     * Calcola in <code>next</code> gli stati raggiungibili da quelli di
+     * <code>current</code> leggendo ch, epsilon chiusura compresa, con una
+     * unione per ogni gruppo di otto stati che contiene stati attivi, oppure
+     * una per ogni mossa degli stati attivi dei gruppi senza tabella.
+     *
+     * @return false se l'insieme calcolato e` vuoto, e quindi nessuna
+     * continuazione dell'input puo` essere accettata
+     */
+    private boolean step(long[] current, char ch, long[] next) {
+        Arrays.fill(next, 0L);
+        final int s = blocks[ch >>> 8][ch & 0xFF];
+        if (s < 0) {
+            return false;
+        }
+        final long[] moving = active[s];
+        final long[][][] table = tables[s];
+        boolean alive = false;
+        for (int w = 0; w < words; w++) {
+            long bits = current[w] & moving[w];
+            for (int c = w << 3; bits != 0; c++, bits >>>= 8) {
+                final int b = (int) bits & 0xFF;
+                if (b == 0) {
+                    continue;
+                }
+                if (table != null && table[c] != null) {
+                    or(next, table[c][b]);
+                } else {
+                    for (int r = b; r != 0; r &= r - 1) {
+                        final int p = c << 3 | Integer.numberOfTrailingZeros(r);
+                        final int k = index.find(p, ch);
+                        if (k >= 0) {
+                            or(next, successors[k]);
+                        }
+                        for (int j = index.rangeStart[p]; j < index.rangeStart[p + 1]; j++) {
+                            if (index.inRange(j, ch)) {
+                                or(next, rangeSuccessors[j]);
+                            }
+                        }
+                    }
+                }
+                alive = true;
+            }
+        }
+        return alive;
+    }
+
+    /**
+     * Conta le mosse dallo stato p con il carattere ch, mossa sul simbolo e
+     * transizioni su intervalli comprese.
+     */
+    private int moves(int p, char ch) {
+        int n = index.find(p, ch) >= 0 ? 1 : 0;
+        for (int j = index.rangeStart[p]; j < index.rangeStart[p + 1]; j++) {
+            if (index.inRange(j, ch)) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Restituisce l'unione delle epsilon chiusure degli stati di arrivo
+     * leggendo dallo stato p il minterm che inizia con ch. Se una sola mossa
+     * contribuisce il suo vettore viene condiviso, altrimenti viene copiato.
+     */
+    private long[] successor(int p, char ch) {
+        //un simbolo dell'alfabeto e` da solo nel suo minterm
+        final int k = index.find(p, ch);
+        long[] result = k >= 0 ? successors[k] : null;
+        boolean shared = true;
+        for (int j = index.rangeStart[p]; j < index.rangeStart[p + 1]; j++) {
+            if (!index.inRange(j, ch)) {
+                continue;
+            }
+            if (result == null) {
+                result = rangeSuccessors[j];
+            } else {
+                if (shared) {
+                    result = result.clone();
+                    shared = false;
+                }
+                or(result, rangeSuccessors[j]);
+            }
+        }
+        return result;
+    }
+
+    private static void set(long[] bits, int p) {
+        bits[p >>> 6] |= 1L << p;
+    }
+
+    private static boolean contains(long[] bits, int p) {
+        return (bits[p >>> 6] & 1L << p) != 0;
+    }
+
+    private static void or(long[] bits, long[] other) {
+        for (int w = 0; w < bits.length; w++) {
+            bits[w] |= other[w];
+        }
+    }
+
+    private static boolean intersects(long[] a, long[] b) {
+        for (int w = 0; w < a.length; w++) {
+            if ((a[w] & b[w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "BitNFA{" + "numberOfStates=" + numberOfStates + ", minterms=" + tables.length + '}';
+    }
+}
@@ -0,0 +1,247 @@
+package dfa2;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Partizione dell'alfabeto di un DFA in classi di equivalenza: due simboli
+ * appartengono alla stessa classe se e solo se da ogni stato dell'automa
+ * portano nello stesso stato di arrivo. La classe 0 raccoglie tutti i
+ * caratteri che non compaiono nell'alfabeto dell'automa, ne' in un intervallo
+ * di una sua transizione.
+ *
+ * La mappa <code>char -&gt; classe</code> e` una tabella a due livelli di
+ * blocchi da 256 caratteri; i blocchi che non contengono simboli dell'alfabeto
+ * sono condivisi, e cosi` quelli interamente contenuti in una classe, quindi
+ * la tabella resta piccola anche per input Unicode e il tempo per costruirla
+ * dipende dal numero di intervalli e non da quanti caratteri coprono.
+ *
+ * @author SashaAlexandru
+ */
+public final class CharClasses {
+
+    /**
+     * Blocco condiviso per tutti i caratteri che cadono nella classe 0.
+     */
+    private static final int[] EMPTY_BLOCK = new int[256];
+
+    /**
+     * <code>blocks[ch &gt;&gt;&gt; 8][ch &amp; 0xFF]</code> e` la classe di ch.
+     */
+    private final int[][] blocks;
+    /**
+     * Numero di classi, compresa la classe 0.
+     */
+    private final int numberOfClasses;
+    /**
+     * Per ogni classe diversa da 0 il simbolo piu` piccolo che le appartiene.
+     */
+    private final char[] representatives;
+    /**
+     * true se ogni carattere appartiene all'alfabeto, e quindi la classe 0 e`
+     * vuota.
+     */
+    private final boolean total;
+    /**
+     * Numero di blocchi distinti diversi da {@link #EMPTY_BLOCK}.
+     */
+    private final int distinctBlocks;
+
+    /**
+     * Calcola le classi di equivalenza dell'alfabeto di un DFA.
+     *
+     * @param dfa L'automa di cui partizionare l'alfabeto
+     */
+    CharClasses(DFA dfa) {
+        final int n = dfa.getNumberOfStates();
+        //gli intervalli elementari (minterm) delle etichette: i caratteri di
+        //un minterm portano da ogni stato nello stesso stato di arrivo
+        final char[] minterms = dfa.minterms();
+        final int k = minterms.length / 2;
+
+        //colonna della funzione di transizione per ogni minterm
+        final int[][] columns = new int[k][n];
+        for (int i = 0; i < k; i++) {
+            for (int p = 0; p < n; p++) {
+                columns[i][p] = dfa.move(p, minterms[2 * i]);
+            }
+        }
+
+        //ordinando i minterm per colonna quelli equivalenti diventano adiacenti
+        Integer[] order = new Integer[k];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int[] x = columns[a];
+                int[] y = columns[b];
+                for (int p = 0; p < x.length; p++) {
+                    if (x[p] != y[p]) {
+                        return x[p] < y[p] ? -1 : 1;
+                    }
+                }
+                return Integer.compare(a, b);
+            }
+        });
+        int[] group = new int[k];
+        int groups = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i == 0 || !Arrays.equals(columns[order[i]], columns[order[i - 1]])) {
+                groups++;
+            }
+            group[order[i]] = groups - 1;
+        }
+
+        //numera le classi nell'ordine del loro simbolo piu` piccolo
+        int[] classOfGroup = new int[groups];
+        representatives = new char[groups + 1];
+        int classes = 1;
+        blocks = new int[256][];
+        Arrays.fill(blocks, EMPTY_BLOCK);
+        //uniform[c] e` il blocco condiviso con tutti i caratteri nella classe c
+        int[][] uniform = new int[groups + 1][];
+        int allocated = 0;
+        int covered = 0;
+        for (int i = 0; i < k; i++) {
+            if (classOfGroup[group[i]] == 0) {
+                classOfGroup[group[i]] = classes;
+                representatives[classes] = minterms[2 * i];
+                classes++;
+            }
+            final int c = classOfGroup[group[i]];
+            final int lo = minterms[2 * i];
+            final int hi = minterms[2 * i + 1];
+            for (int b = lo >>> 8; b <= hi >>> 8; b++) {
+                final int from = Math.max(lo, b << 8);
+                final int to = Math.min(hi, b << 8 | 0xFF);
+                if (to - from == 0xFF) {
+                    if (uniform[c] == null) {
+                        uniform[c] = new int[256];
+                        Arrays.fill(uniform[c], c);
+                        allocated++;
+                    }
+                    blocks[b] = uniform[c];
+                } else {
+                    if (blocks[b] == EMPTY_BLOCK) {
+                        blocks[b] = new int[256];
+                        allocated++;
+                    }
+                    Arrays.fill(blocks[b], from & 0xFF, (to & 0xFF) + 1, c);
+                }
+            }
+            covered += hi - lo + 1;
+        }
+        numberOfClasses = classes;
+        total = covered == Character.MAX_VALUE + 1;
+        distinctBlocks = allocated;
+    }
+
+    /**
+     * Divide l'insieme dei caratteri coperti da alcuni intervalli in
+     * intervalli elementari (minterm) disgiunti: ogni intervallo dato e`
+     * unione di minterm, e due caratteri dello stesso minterm appartengono
+     * agli stessi intervalli dati. Il costo dipende dal numero di intervalli e
+     * non dal numero di caratteri che coprono.
+     *
+     * @param lo Gli estremi inferiori degli intervalli
+     * @param hi Gli estremi superiori degli intervalli, inclusi
+     * @param count Il numero di intervalli
+     * @return I minterm in ordine crescente, come coppie di estremi
+     * <code>{lo0, hi0, lo1, hi1, ...}</code>
+     */
+    static char[] minterms(char[] lo, char[] hi, int count) {
+        //eventi: inizio di un intervallo (+1) e carattere dopo la fine (-1),
+        //codificati come posizione * 2 + (1 se inizio)
+        long[] events = new long[2 * count];
+        for (int i = 0; i < count; i++) {
+            events[2 * i] = (long) lo[i] << 1 | 1;
+            events[2 * i + 1] = ((long) hi[i] + 1) << 1;
+        }
+        Arrays.sort(events);
+        char[] result = new char[4 * count];
+        int size = 0;
+        int open = 0;
+        long start = 0;
+        for (int i = 0; i < events.length; i++) {
+            final long position = events[i] >>> 1;
+            if (open > 0 && position > start) {
+                result[size++] = (char) start;
+                result[size++] = (char) (position - 1);
+            }
+            open += (events[i] & 1) != 0 ? 1 : -1;
+            start = position;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Stima approssimata della memoria occupata, in byte.
+     */
+    long memorySize() {
+        return 8L * blocks.length + 2L * representatives.length + 4L * 256 * distinctBlocks;
+    }
+
+    /**
+     * Restituisce la classe di equivalenza di un carattere.
+     *
+     * @param ch Il carattere
+     * @return L'indice della classe, 0 se ch non appartiene all'alfabeto
+     */
+    public int classOf(char ch) {
+        return blocks[ch >>> 8][ch & 0xFF];
+    }
+
+    /**
+     * Restituisce il numero di classi, compresa la classe 0.
+     *
+     * @return Numero di classi
+     */
+    public int numberOfClasses() {
+        return numberOfClasses;
+    }
+
+    /**
+     * Determina se ogni carattere appartiene all'alfabeto, ovvero se la
+     * classe 0 e` vuota.
+     *
+     * @return true se nessun carattere cade nella classe 0
+     */
+    public boolean total() {
+        return total;
+    }
+
+    /**
+     * Restituisce il simbolo piu` piccolo di una classe.
+     *
+     * @param c Una classe diversa da 0
+     * @return Il rappresentante della classe c
+     */
+    public char representative(int c) {
+        return representatives[c];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CharClasses{numberOfClasses=" + numberOfClasses + ", classes=[");
+        for (int c = 1; c < numberOfClasses; c++) {
+            sb.append(c == 1 ? "" : ", ").append(c).append('=');
+            sb.append('[');
+            boolean first = true;
+            for (int b = 0; b < blocks.length; b++) {
+                if (blocks[b] == EMPTY_BLOCK) {
+                    continue;
+                }
+                for (int i = 0; i < 256; i++) {
+                    if (blocks[b][i] == c) {
+                        sb.append(first ? "" : ",").append((char) (b << 8 | i));
+                        first = false;
+                    }
+                }
+            }
+            sb.append(']');
+        }
+        return sb.append("]}").toString();
+    }
+}
@@ -0,0 +1,609 @@
+package dfa2;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Forma compilata e immutabile di un {@link DFA}. La funzione di transizione
+ * e` memorizzata in una tabella densa <code>int[]</code> indicizzata con
+ * <code>stato * width + classe</code>, dove la classe del simbolo e` data da
+ * {@link CharClasses}, cosi` che la scansione di una stringa non allochi
+ * oggetti per ogni carattere letto e la tabella resti stretta anche per
+ * alfabeti Unicode.
+ *
+ * @author SashaAlexandru
+ */
+public final class CompiledDFA implements Recognizer {
+
+    /**
+     * Stato pozzo usato come sentinella nella tabella: indica che l'automa non
+     * ha una transizione per il simbolo letto, oppure che e` arrivato in uno
+     * stato da cui non si puo` piu` raggiungere uno stato finale.
+     */
+    public static final int DEAD = -1;
+    /**
+     * Sentinella per gli stati finali da cui ogni continuazione dell'input
+     * resta accettata: raggiunto questo stato la scansione si ferma e
+     * l'input e` accettato.
+     */
+    public static final int ACCEPT = -2;
+
+    /**
+     * Lunghezza minima di un pezzo di input nella scansione parallela.
+     */
+    private static final int MIN_PARALLEL_CHUNK = 1 << 16;
+    /**
+     * Ogni quanti caratteri la scansione speculativa fonde gli stati correnti
+     * uguali.
+     */
+    private static final int MERGE_INTERVAL = 64;
+
+    /**
+     * Numero degli stati dell'automa. Lo stato 0 e` lo stato iniziale.
+     */
+    private final int numberOfStates;
+    /**
+     * Classi di equivalenza dell'alfabeto; la classe di un simbolo e` la sua
+     * colonna nella tabella delle transizioni.
+     */
+    private final CharClasses classes;
+    /**
+     * Numero di colonne della tabella, ovvero il numero di classi di simboli.
+     */
+    private final int width;
+    /**
+     * Tabella delle transizioni: <code>table[p * width + c]</code> e` lo stato
+     * di arrivo leggendo un simbolo della classe <code>c</code> dallo stato
+     * <code>p</code>, oppure {@link #DEAD} o {@link #ACCEPT}.
+     */
+    private final int[] table;
+    /**
+     * <code>finalStates[p]</code> e` true se e solo se p e` uno stato finale.
+     */
+    private final boolean[] finalStates;
+    /**
+     * Stato da cui parte ogni scansione: 0, oppure una delle sentinelle.
+     */
+    private final int initial;
+
+    /**
+     * Compila un DFA nella sua forma tabellare, sostituendo gli stati pozzo
+     * con {@link #DEAD} e gli stati che accettano ogni continuazione con
+     * {@link #ACCEPT}.
+     *
+     * @param dfa L'automa da compilare
+     */
+    CompiledDFA(DFA dfa) {
+        this(dfa, true);
+    }
+
+    /**
+     * Compila un DFA nella sua forma tabellare. Gli stati pozzo vengono sempre
+     * sostituiti con {@link #DEAD}; gli stati che accettano ogni
+     * continuazione vengono sostituiti con {@link #ACCEPT} solo se richiesto,
+     * perche' chi associa informazioni ai singoli stati finali (come
+     * {@link Tokenizer}) ha bisogno di sapere in quale stato si trova.
+     *
+     * @param dfa L'automa da compilare
+     * @param collapseAccepting true per sostituire gli stati che accettano
+     * ogni continuazione con {@link #ACCEPT}
+     */
+    CompiledDFA(DFA dfa, boolean collapseAccepting) {
+        numberOfStates = dfa.getNumberOfStates();
+        classes = new CharClasses(dfa);
+        width = classes.numberOfClasses();
+        table = new int[numberOfStates * width];
+        for (int p = 0; p < numberOfStates; p++) {
+            table[p * width] = DEAD;
+            for (int c = 1; c < width; c++) {
+                table[p * width + c] = dfa.move(p, classes.representative(c));
+            }
+        }
+        finalStates = new boolean[numberOfStates];
+        for (int p = 0; p < numberOfStates; p++) {
+            finalStates[p] = dfa.finalState(p);
+        }
+
+        //stati vivi: quelli da cui si puo` raggiungere uno stato finale,
+        //calcolati all'indietro a partire dagli stati finali
+        int[] count = new int[numberOfStates + 1];
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] >= 0) {
+                count[table[i] + 1]++;
+            }
+        }
+        for (int q = 0; q < numberOfStates; q++) {
+            count[q + 1] += count[q];
+        }
+        int[] predecessors = new int[count[numberOfStates]];
+        int[] next = Arrays.copyOf(count, numberOfStates);
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] >= 0) {
+                predecessors[next[table[i]]++] = i / width;
+            }
+        }
+        boolean[] live = new boolean[numberOfStates];
+        int[] stack = new int[numberOfStates];
+        int top = 0;
+        for (int p = 0; p < numberOfStates; p++) {
+            if (finalStates[p]) {
+                live[p] = true;
+                stack[top++] = p;
+            }
+        }
+        while (top > 0) {
+            int q = stack[--top];
+            for (int i = count[q]; i < count[q + 1]; i++) {
+                if (!live[predecessors[i]]) {
+                    live[predecessors[i]] = true;
+                    stack[top++] = predecessors[i];
+                }
+            }
+        }
+
+        //stati che accettano ogni continuazione: il piu` grande insieme di
+        //stati finali chiuso rispetto alle transizioni delle classi che
+        //contengono almeno un carattere. La classe 0 conta come DEAD se
+        //qualche carattere vi cade, ed e` ignorata se e` vuota. Si calcola
+        //all'indietro come gli stati vivi: uno stato smette di accettare
+        //ogni continuazione quando lo fa uno dei suoi successori.
+        boolean[] accepting = new boolean[numberOfStates];
+        if (collapseAccepting) {
+            int first = classes.total() ? 1 : 0;
+            for (int p = 0; p < numberOfStates; p++) {
+                accepting[p] = finalStates[p];
+                for (int c = first; c < width && accepting[p]; c++) {
+                    accepting[p] = table[p * width + c] >= 0;
+                }
+                if (!accepting[p]) {
+                    stack[top++] = p;
+                }
+            }
+            while (top > 0) {
+                int q = stack[--top];
+                for (int i = count[q]; i < count[q + 1]; i++) {
+                    if (accepting[predecessors[i]]) {
+                        accepting[predecessors[i]] = false;
+                        stack[top++] = predecessors[i];
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] >= 0 && !live[table[i]]) {
+                table[i] = DEAD;
+            } else if (table[i] >= 0 && accepting[table[i]]) {
+                table[i] = ACCEPT;
+            }
+        }
+        if (numberOfStates == 0 || !live[0]) {
+            initial = DEAD;
+        } else {
+            initial = accepting[0] ? ACCEPT : 0;
+        }
+    }
+
+    /**
+     * Restituisce il numero di stati dell'automa.
+     *
+     * @return Numero di stati.
+     */
+    public int numberOfStates() {
+        return numberOfStates;
+    }
+
+    /**
+     * Restituisce le classi di equivalenza dei simboli usate come colonne
+     * della tabella.
+     *
+     * @return La partizione dell'alfabeto
+     */
+    public CharClasses classes() {
+        return classes;
+    }
+
+    /**
+     * Stima approssimata della memoria occupata dalla tabella, dagli stati
+     * finali e dalle classi, in byte.
+     */
+    long memorySize() {
+        return 4L * table.length + finalStates.length + classes.memorySize();
+    }
+
+    /**
+     * Determina se p e` uno stato finale.
+     *
+     * @param p Lo stato da verificare
+     * @return true se p e` uno stato finale o {@link #ACCEPT}, false
+     * altrimenti (anche per {@link #DEAD})
+     */
+    public boolean finalState(int p) {
+        return p >= 0 ? finalStates[p] : p == ACCEPT;
+    }
+
+    /**
+     * Esegue una mossa dallo stato p leggendo il simbolo ch.
+     *
+     * @param p Lo stato di partenza prima della transizione
+     * @param ch Il simbolo da riconoscere
+     * @return Lo stato di arrivo, {@link #DEAD} se da p non esiste una
+     * transizione etichettata ch che porti a uno stato finale, oppure
+     * {@link #ACCEPT}. Le sentinelle vanno in se stesse.
+     */
+    public int move(int p, char ch) {
+        if (p < 0) {
+            return p;
+        }
+        return table[p * width + classes.classOf(ch)];
+    }
+
+    /**
+     * Restituisce lo stato da cui parte ogni scansione.
+     *
+     * @return Lo stato 0, oppure {@link #DEAD} se nessuna stringa e`
+     * accettata, oppure {@link #ACCEPT} se ogni stringa e` accettata
+     */
+    public int initialState() {
+        return initial;
+    }
+
+    /**
+     * Verifica se la sequenza di caratteri s e` riconosciuta dall'automa.
+     * Non stampa nulla e non copia l'input.
+     *
+     * @param s La sequenza da riconoscere
+     * @return true se s e` accettata, false altrimenti
+     */
+    @Override
+    public boolean scan(CharSequence s) {
+        return finalState(run(initialState(), s, 0, s.length()));
+    }
+
+    /**
+     * Verifica se la porzione <code>a[offset, offset + length)</code> di un
+     * array di caratteri e` riconosciuta dall'automa.
+     *
+     * @param a L'array che contiene l'input
+     * @param offset L'indice del primo carattere da leggere
+     * @param length Il numero di caratteri da leggere
+     * @return true se la porzione e` accettata, false altrimenti
+     * @throws IndexOutOfBoundsException se la porzione non e` contenuta in a
+     */
+    @Override
+    public boolean scan(char[] a, int offset, int length) {
+        checkSlice(a, offset, length);
+        return finalState(run(initialState(), a, offset, offset + length));
+    }
+
+    /**
+     * Verifica se i caratteri rimanenti di un buffer, da
+     * <code>position()</code> a <code>limit()</code>, sono riconosciuti
+     * dall'automa. La posizione del buffer non viene modificata.
+     *
+     * @param buffer Il buffer che contiene l'input
+     * @return true se l'input e` accettato, false altrimenti
+     */
+    public boolean scan(CharBuffer buffer) {
+        return finalState(run(initialState(), buffer));
+    }
+
+    /**
+     * Verifica se una sequenza molto lunga e` riconosciuta dall'automa,
+     * dividendola in pezzi riconosciuti in parallelo dal pool comune di
+     * fork/join.
+     *
+     * @param s La sequenza da riconoscere
+     * @return true se s e` accettata, false altrimenti
+     * @see #parallelScan(CharSequence, ForkJoinPool)
+     */
+    public boolean parallelScan(CharSequence s) {
+        return parallelScan(s, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Verifica se una sequenza molto lunga e` riconosciuta dall'automa,
+     * dividendola in pezzi riconosciuti in parallelo. Solo il primo pezzo
+     * parte dallo stato iniziale; per gli altri non si sa in quale stato
+     * l'automa arrivera`, quindi vengono eseguiti a partire da tutti gli stati
+     * contemporaneamente, calcolando la funzione che associa a ogni stato di
+     * partenza lo stato di arrivo. Gli stati che durante il pezzo finiscono
+     * nello stesso stato vengono fusi, cosi` che il costo scende rapidamente
+     * al costo di una sola esecuzione. Infine le funzioni dei pezzi vengono
+     * composte in ordine, ottenendo lo stesso stato della scansione
+     * sequenziale.
+     *
+     * @param s La sequenza da riconoscere, che non deve cambiare durante la
+     * scansione
+     * @param pool Il pool che esegue la scansione
+     * @return true se s e` accettata, false altrimenti
+     */
+    public boolean parallelScan(final CharSequence s, ForkJoinPool pool) {
+        final int n = s.length();
+        int chunks = Math.min(pool.getParallelism() * 2, n / MIN_PARALLEL_CHUNK);
+        if (chunks < 2) {
+            return scan(s);
+        }
+        ArrayList<RecursiveTask<int[]>> tasks = new ArrayList<>();
+        for (int k = 0; k < chunks; k++) {
+            final int from = (int) ((long) n * k / chunks);
+            final int to = (int) ((long) n * (k + 1) / chunks);
+            final boolean first = k == 0;
+            tasks.add(new RecursiveTask<int[]>() {
+                @Override
+                protected int[] compute() {
+                    return first ? new int[]{run(initialState(), s, from, to)} : transfer(s, from, to);
+                }
+            });
+        }
+        for (RecursiveTask<int[]> task : tasks) {
+            pool.execute(task);
+        }
+        int p = tasks.get(0).join()[0];
+        for (int k = 1; k < chunks; k++) {
+            int[] f = tasks.get(k).join();
+            p = p < 0 ? p : f[p];
+        }
+        return finalState(p);
+    }
+
+    /**
+     * Calcola la funzione di trasferimento dei caratteri
+     * <code>s[from, to)</code>: l'elemento p del risultato e` lo stato
+     * raggiunto partendo da p. Gli stati correnti vengono eseguiti insieme e
+     * ogni {@link #MERGE_INTERVAL} caratteri quelli uguali vengono fusi.
+     */
+    private int[] transfer(CharSequence s, int from, int to) {
+        final int n = numberOfStates;
+        int[] current = new int[n];     //stati correnti distinti
+        int[] slot = new int[n];        //slot[p] = indice in current dello stato partito da p
+        for (int p = 0; p < n; p++) {
+            current[p] = p;
+            slot[p] = p;
+        }
+        int live = n;
+        int[] seen = new int[n + 2];    //seen[q + 2] = 1 + nuovo indice di q nell'ultima fusione
+        int[] remap = new int[n];
+        int i = from;
+        while (i < to && live > 1) {
+            int stop = Math.min(to, i + MERGE_INTERVAL);
+            for (; i < stop; i++) {
+                int c = classes.classOf(s.charAt(i));
+                for (int j = 0; j < live; j++) {
+                    if (current[j] >= 0) {
+                        current[j] = table[current[j] * width + c];
+                    }
+                }
+            }
+            Arrays.fill(seen, 0);
+            int merged = 0;
+            for (int j = 0; j < live; j++) {
+                int q = current[j];
+                if (seen[q + 2] == 0) {
+                    current[merged] = q;
+                    seen[q + 2] = ++merged;
+                }
+                remap[j] = seen[q + 2] - 1;
+            }
+            for (int p = 0; p < n; p++) {
+                slot[p] = remap[slot[p]];
+            }
+            live = merged;
+        }
+        if (live == 1) {
+            current[0] = run(current[0], s, i, to);
+        }
+        int[] f = new int[n];
+        for (int p = 0; p < n; p++) {
+            f[p] = current[slot[p]];
+        }
+        return f;
+    }
+
+    /**
+     * Verifica quali stringhe di una lista sono riconosciute dall'automa,
+     * dividendo il lavoro fra i thread del pool comune di fork/join.
+     *
+     * @param inputs Le stringhe da riconoscere
+     * @return L'insieme degli indici delle stringhe accettate
+     */
+    public BitSet scanAll(List<? extends CharSequence> inputs) {
+        return scanAll(inputs, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Verifica quali stringhe di una lista sono riconosciute dall'automa,
+     * dividendo il lavoro fra i thread di un pool di fork/join. La lista non
+     * deve essere modificata durante la scansione.
+     *
+     * @param inputs Le stringhe da riconoscere
+     * @param pool Il pool che esegue la scansione
+     * @return L'insieme degli indici delle stringhe accettate
+     */
+    public BitSet scanAll(final List<? extends CharSequence> inputs, ForkJoinPool pool) {
+        final List<? extends CharSequence> list = inputs instanceof RandomAccess
+                ? inputs : new ArrayList<>(inputs);
+        return pool.invoke(new BatchScan(list.size()) {
+            @Override
+            boolean accepts(int i) {
+                CharSequence s = list.get(i);
+                return finalState(run(initialState(), s, 0, s.length()));
+            }
+        });
+    }
+
+    /**
+     * Verifica quali stringhe di un buffer impacchettato sono riconosciute
+     * dall'automa. La stringa i-esima e` <code>data[offsets[i],
+     * offsets[i + 1])</code>, quindi <code>offsets</code> contiene una
+     * posizione in piu` del numero di stringhe.
+     *
+     * @param data I caratteri di tutte le stringhe, uno dopo l'altro
+     * @param offsets Le posizioni di inizio delle stringhe seguite dalla
+     * posizione di fine dell'ultima
+     * @return L'insieme degli indici delle stringhe accettate
+     * @throws IndexOutOfBoundsException se una stringa non e` contenuta in
+     * data
+     */
+    public BitSet scanAll(final char[] data, final int[] offsets) {
+        for (int i = 0; i + 1 < offsets.length; i++) {
+            checkSlice(data, offsets[i], offsets[i + 1] - offsets[i]);
+        }
+        return ForkJoinPool.commonPool().invoke(new BatchScan(Math.max(0, offsets.length - 1)) {
+            @Override
+            boolean accepts(int i) {
+                return finalState(run(initialState(), data, offsets[i], offsets[i + 1]));
+            }
+        });
+    }
+
+    /**
+     * Crea un riconoscitore incrementale che parte dallo stato iniziale e
+     * puo` essere alimentato con l'input un pezzo alla volta.
+     *
+     * @return Un nuovo riconoscitore per questo automa
+     */
+    public StreamMatcher matcher() {
+        return new StreamMatcher(this);
+    }
+
+    /**
+     * Esegue l'automa a partire dallo stato p sui caratteri
+     * <code>s[from, to)</code>, fermandosi appena raggiunge una sentinella.
+     *
+     * @return Lo stato raggiunto
+     */
+    int run(int p, CharSequence s, int from, int to) {
+        for (int i = from; i < to && p >= 0; i++) {
+            p = table[p * width + classes.classOf(s.charAt(i))];
+        }
+        return p;
+    }
+
+    /**
+     * Esegue l'automa a partire dallo stato p sui caratteri
+     * <code>a[from, to)</code>, fermandosi appena raggiunge una sentinella.
+     *
+     * @return Lo stato raggiunto
+     */
+    int run(int p, char[] a, int from, int to) {
+        for (int i = from; i < to && p >= 0; i++) {
+            p = table[p * width + classes.classOf(a[i])];
+        }
+        return p;
+    }
+
+    /**
+     * Esegue l'automa a partire dallo stato p sui caratteri rimanenti di un
+     * buffer senza modificarne la posizione.
+     *
+     * @return Lo stato raggiunto
+     */
+    int run(int p, CharBuffer buffer) {
+        if (buffer.hasArray()) {
+            int from = buffer.arrayOffset() + buffer.position();
+            return run(p, buffer.array(), from, from + buffer.remaining());
+        }
+        for (int i = buffer.position(), end = buffer.limit(); i < end && p >= 0; i++) {
+            p = table[p * width + classes.classOf(buffer.get(i))];
+        }
+        return p;
+    }
+
+    /**
+     * Restituisce la tabella delle transizioni, indicizzata con
+     * <code>p * width() + classe</code>. L'array non deve essere modificato.
+     */
+    int[] table() {
+        return table;
+    }
+
+    /**
+     * Restituisce il numero di colonne della tabella delle transizioni.
+     */
+    int width() {
+        return width;
+    }
+
+    /**
+     * Scansione di un lotto di stringhe numerate da 0 a n - 1. Il lotto viene
+     * diviso ricorsivamente in intervalli allineati a 64 indici, cosi` che
+     * ogni foglia scriva parole distinte dell'array di bit e non serva
+     * sincronizzazione.
+     */
+    private abstract static class BatchScan extends RecursiveTask<BitSet> {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Numero di stringhe sotto il quale una foglia non viene divisa; e`
+         * un multiplo di 64.
+         */
+        private static final int LEAF = 1024;
+
+        private final int n;
+
+        BatchScan(int n) {
+            this.n = n;
+        }
+
+        /**
+         * Verifica se la stringa i-esima e` accettata.
+         */
+        abstract boolean accepts(int i);
+
+        @Override
+        protected BitSet compute() {
+            long[] words = new long[(n + 63) >>> 6];
+            new Range(words, 0, n).compute();
+            return BitSet.valueOf(words);
+        }
+
+        private final class Range extends RecursiveAction {
+
+            private static final long serialVersionUID = 1L;
+
+            private final long[] words;
+            private final int from;
+            private final int to;
+
+            Range(long[] words, int from, int to) {
+                this.words = words;
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from <= LEAF) {
+                    for (int i = from; i < to; i++) {
+                        if (accepts(i)) {
+                            words[i >>> 6] |= 1L << i;
+                        }
+                    }
+                } else {
+                    int mid = from + Math.max(1, (to - from) / LEAF / 2) * LEAF;
+                    invokeAll(new Range(words, from, mid), new Range(words, mid, to));
+                }
+            }
+        }
+    }
+
+    /**
+     * Controlla che <code>a[offset, offset + length)</code> sia una porzione
+     * valida dell'array.
+     */
+    static void checkSlice(char[] a, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > a.length - length) {
+            throw new IndexOutOfBoundsException("offset=" + offset + ", length=" + length);
+        }
+    }
+
+}
@@ -1,10 +1,13 @@
 package dfa2;
 
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Un oggetto della calsse DFA rapresenta un automa a stati finiti
@@ -28,6 +31,18 @@ public class DFA {
      * a stati di arrivo <code>HashMap<Key, Value></code>
      */
     private HashMap<Move, Integer> transitions;
+    /**
+     * Transizioni etichettate da intervalli di caratteri: per ogni stato una
+     * mappa ordinata dall'estremo inferiore di ogni intervallo alla coppia
+     * {estremo superiore, stato di arrivo}. Gli intervalli di uno stato sono
+     * disgiunti.
+     */
+    private HashMap<Integer, TreeMap<Character, int[]>> ranges;
+    /**
+     * Forma compilata dell'automa usata dalle varianti di <code>scan</code>
+     * senza allocazioni; viene ricalcolata dopo ogni modifica dell'automa.
+     */
+    private CompiledDFA compiled;
 
     /**
      * Crea un DFA con n numero di stati
@@ -38,6 +53,7 @@ public class DFA {
         this.numberOfStates = n;
         finalStates = new HashSet<>();
         transitions = new HashMap<>();
+        ranges = new HashMap<>();
     }
 
     /**
@@ -46,6 +62,7 @@ public class DFA {
      * @return l'indice dello stato creato
      */
     public int newState() {
+        compiled = null;
         return numberOfStates++;
     }
 
@@ -63,11 +80,58 @@ public class DFA {
         if (validState(p) && validState(q)) {
             //System.out.println("Valid");
             transitions.put(new Move(p, ch), q);
+            compiled = null;
             return true;
         }
         return false;
     }
 
+    /**
+     * Aggiunge una transizione etichettata da tutti i caratteri di un
+     * intervallo, senza aggiungere una mossa per ogni carattere. La parte
+     * degli intervalli gia` presenti dallo stato p che cade in [lo, hi] viene
+     * sostituita; le transizioni su singoli simboli aggiunte con
+     * {@link #setMove} hanno comunque la precedenza. Le transizioni su
+     * intervalli sono usate da {@link #move}, dalle scansioni e dalla forma
+     * compilata, ma non dai metodi basati su {@link #alphabet()}.
+     *
+     * @param p Lo stato di partenza della transizione
+     * @param lo Il primo carattere dell'intervallo
+     * @param hi L'ultimo carattere dell'intervallo, incluso
+     * @param q Lo stato di arrivo della transizione
+     * @return true se gli stati sono validi e lo &lt;= hi, altrimenti false
+     */
+    public boolean setRange(int p, char lo, char hi, int q) {
+        if (!validState(p) || !validState(q) || lo > hi) {
+            return false;
+        }
+        TreeMap<Character, int[]> row = ranges.get(p);
+        if (row == null) {
+            row = new TreeMap<>();
+            ranges.put(p, row);
+        }
+        //intervallo che inizia prima di lo e lo contiene
+        Map.Entry<Character, int[]> before = row.lowerEntry(lo);
+        if (before != null && before.getValue()[0] >= lo) {
+            int[] old = before.getValue();
+            if (old[0] > hi) {
+                row.put((char) (hi + 1), new int[]{old[0], old[1]});
+            }
+            row.put(before.getKey(), new int[]{lo - 1, old[1]});
+        }
+        //intervalli che iniziano in [lo, hi]
+        ArrayList<Character> inside = new ArrayList<>(row.subMap(lo, true, hi, true).keySet());
+        for (char start : inside) {
+            int[] old = row.remove(start);
+            if (old[0] > hi) {
+                row.put((char) (hi + 1), new int[]{old[0], old[1]});
+            }
+        }
+        row.put(lo, new int[]{hi, q});
+        compiled = null;
+        return true;
+    }
+
     /**
      * Aggiunge all'automa uno stato finale
      *
@@ -77,6 +141,7 @@ public class DFA {
     public boolean addFinalState(int p) {
         if (validState(p)) {
             finalStates.add(p);
+            compiled = null;
             return true;
         }
         return false;
@@ -133,9 +198,15 @@ public class DFA {
         Move move = new Move(p, c);
         if (transitions.containsKey(move)) {
             return transitions.get(move);
-        } else {
-            return -1;
         }
+        TreeMap<Character, int[]> row = ranges.get(p);
+        if (row != null) {
+            Map.Entry<Character, int[]> range = row.floorEntry(c);
+            if (range != null && range.getValue()[0] >= c) {
+                return range.getValue()[1];
+            }
+        }
+        return -1;
 
     }
 
@@ -152,6 +223,87 @@ public class DFA {
         return finalState(p);
     }
 
+    /**
+     * Verifica se la sequenza di caratteri s e` riconosciuta dall'automa. A
+     * differenza di {@link #scan(String)} non stampa nulla e non alloca
+     * oggetti per ogni carattere letto.
+     *
+     * @param s La sequenza da riconoscere
+     * @return true se s e` accettata, false altrimenti
+     */
+    public boolean scan(CharSequence s) {
+        return compiled().scan(s);
+    }
+
+    /**
+     * Verifica se una porzione di un array di caratteri e` riconosciuta
+     * dall'automa, senza copiarla.
+     *
+     * @param a L'array che contiene l'input
+     * @param offset L'indice del primo carattere da leggere
+     * @param length Il numero di caratteri da leggere
+     * @return true se la porzione e` accettata, false altrimenti
+     */
+    public boolean scan(char[] a, int offset, int length) {
+        return compiled().scan(a, offset, length);
+    }
+
+    /**
+     * Verifica se i caratteri rimanenti di un buffer sono riconosciuti
+     * dall'automa. La posizione del buffer non viene modificata.
+     *
+     * @param buffer Il buffer che contiene l'input
+     * @return true se l'input e` accettato, false altrimenti
+     */
+    public boolean scan(CharBuffer buffer) {
+        return compiled().scan(buffer);
+    }
+
+    /**
+     * Verifica in parallelo quali stringhe di una lista sono riconosciute
+     * dall'automa.
+     *
+     * @param inputs Le stringhe da riconoscere
+     * @return L'insieme degli indici delle stringhe accettate
+     * @see CompiledDFA#scanAll(List)
+     */
+    public BitSet scanAll(List<? extends CharSequence> inputs) {
+        return compiled().scanAll(inputs);
+    }
+
+    /**
+     * Crea un riconoscitore incrementale per questo automa, che puo` essere
+     * alimentato con l'input un pezzo alla volta. Il riconoscitore usa la
+     * forma compilata attuale e non vede le modifiche successive.
+     *
+     * @return Un nuovo riconoscitore nello stato iniziale
+     */
+    public StreamMatcher matcher() {
+        return compiled().matcher();
+    }
+
+    /**
+     * Restituisce la forma compilata dell'automa, calcolandola solo se e`
+     * cambiato dall'ultima volta.
+     */
+    private CompiledDFA compiled() {
+        if (compiled == null) {
+            compiled = compile();
+        }
+        return compiled;
+    }
+
+    /**
+     * Compila l'automa in una tabella di transizione densa. Il risultato e` una
+     * fotografia dello stato attuale: le modifiche successive a questo DFA non
+     * si riflettono sull'automa compilato.
+     *
+     * @return La forma compilata e immutabile dell'automa
+     */
+    public CompiledDFA compile() {
+        return new CompiledDFA(this);
+    }
+
     /*
      * Verifica se la funzione di transizione è completa, ossia definita per tutti gli stati dell’automa ed i simboli del suo alfabeto di riferimento.
      * @return True se la funzione di transizione è definita per tutti gli stati ed i simboli dell'alfabeto, False altrimenti.
@@ -175,7 +327,7 @@ public class DFA {
         diGraph = diGraph + "node [color=blue4, shape = circle]; \n";
         diGraph = diGraph + "rankdir=LR; \n";
         diGraph = diGraph + "secret_node [style=invis] \n";
-        if (!transitions.isEmpty()) {
+        if (!transitions.isEmpty() || !ranges.isEmpty()) {
             diGraph = diGraph + "secret_node -> 0;\n";
         }
 
@@ -221,6 +373,11 @@ public class DFA {
             Integer endNode = coppiaStati.getValue();
             diGraph = diGraph + startNode + " -> " + endNode + "[label = <<font color=\"darkgreen\">" + listaChar.toString() + "</font>>]; \n";
         }
+        for (Map.Entry<Integer, TreeMap<Character, int[]>> row : ranges.entrySet()) {
+            for (Map.Entry<Character, int[]> range : row.getValue().entrySet()) {
+                diGraph = diGraph + row.getKey() + " -> " + range.getValue()[1] + "[label = <<font color=\"darkgreen\">[" + range.getKey() + "-" + (char) range.getValue()[0] + "]</font>>]; \n";
+            }
+        }
         //diGraph = diGraph + startNode.start + " -> " + endNode + "[label = <<font color=\"darkgreen\">" + startNode.getCh() + "</font>>]; \n";
         for (Integer toEnd : finalStates) {
             diGraph = diGraph + toEnd + " [shape = \"doublecircle\"]; \n";
@@ -229,10 +386,47 @@ public class DFA {
         return diGraph;
     }
 
+    /**
+     * Restituisce gli intervalli elementari (minterm) delle etichette
+     * dell'automa, singoli simboli e intervalli: da ogni stato tutti i
+     * caratteri di un minterm portano nello stesso stato.
+     *
+     * @return I minterm come coppie di estremi, vedi
+     * {@link CharClasses#minterms}
+     */
+    char[] minterms() {
+        int count = transitions.size();
+        for (TreeMap<Character, int[]> row : ranges.values()) {
+            count += row.size();
+        }
+        char[] lo = new char[count];
+        char[] hi = new char[count];
+        int k = 0;
+        for (Move m : transitions.keySet()) {
+            lo[k] = hi[k] = m.ch;
+            k++;
+        }
+        for (TreeMap<Character, int[]> row : ranges.values()) {
+            for (Map.Entry<Character, int[]> range : row.entrySet()) {
+                lo[k] = range.getKey();
+                hi[k] = (char) range.getValue()[0];
+                k++;
+            }
+        }
+        return CharClasses.minterms(lo, hi, count);
+    }
+
     public HashMap<Move, Integer> getTransitions() {
         return transitions;
     }
 
+    /**
+     * Restituisce le transizioni su intervalli, per stato di partenza.
+     */
+    HashMap<Integer, TreeMap<Character, int[]>> getRanges() {
+        return ranges;
+    }
+
     /**
      * Esercizio 3.1 (parte del esercizio) Il metodo empty che ritorna true se e
      * solo se l’automa riconosce il linguaggio vuoto (si ricorda che il
@@ -424,24 +618,44 @@ public class DFA {
         return result;
     }
 
+    /**
+     * Completa la funzione di transizione aggiungendo uno stato pozzo: ogni
+     * simbolo dell'alfabeto e ogni minterm degli intervalli per cui uno stato
+     * non ha transizioni porta nel pozzo. Le transizioni esistenti, anche su
+     * intervalli, non cambiano, quindi il linguaggio resta lo stesso.
+     */
     public void completeDFA() {
+        compiled = null;
+        HashSet<Character> allKeys = alphabet();
+        char[] minterms = ranges.isEmpty() ? new char[0] : minterms();
         numberOfStates++;
+        final int sink = numberOfStates - 1;
         for (int i = 0; i < numberOfStates; i++) {
-            HashMap<Character, Integer> transizionOfi = getTransitions(i);
-            Set<Character> keys = transizionOfi.keySet();
-            HashSet<Character> allKeys = alphabet();
             for (Character verify : allKeys) {
-                if (!keys.contains(verify)) {
-                    setMove(i, verify, numberOfStates - 1);
+                if (move(i, verify) == -1) {
+                    setMove(i, verify, sink);
+                }
+            }
+            //tutti i caratteri di un minterm vanno nello stesso stato
+            for (int k = 0; k < minterms.length; k += 2) {
+                if (!allKeys.contains(minterms[k]) && move(i, minterms[k]) == -1) {
+                    setRange(i, minterms[k], minterms[k + 1], sink);
                 }
             }
         }
     }
 
     /**
-     * Metodo che implementa il algoritmo minimize.
+     * Metodo che implementa il algoritmo minimize. La tabella considera solo
+     * i simboli di {@link #alphabet()}: se l'automa ha transizioni su
+     * intervalli il calcolo e` delegato a {@link #minimizeHopcroft()}.
+     *
+     * @see #minimizeHopcroft()
      */
     public DFA minimize() {
+        if (!ranges.isEmpty()) {
+            return minimizeHopcroft();
+        }
         //1-allocare la matrice
         boolean[][] eq = new boolean[numberOfStates][numberOfStates];
         //eq[i][j] = true se i e j sono stati entrambi finali o entrambi nonfinali
@@ -517,16 +731,46 @@ public class DFA {
         return minima;
     }
     
+    /**
+     * Calcola il DFA minimo equivalente per raffinamento di partizioni
+     * (Hopcroft, nella variante di Valmari e Lehtinen), in tempo
+     * O(m log n) con m il numero di transizioni e memoria O(n + m), invece
+     * della tabella n&times;n di {@link #minimize()}. L'automa puo` essere
+     * parziale, senza chiamare prima {@link #completeDFA()}, e le transizioni
+     * su intervalli vengono conservate. Il risultato non ha stati
+     * irraggiungibili ne' stati pozzo.
+     *
+     * @return Il DFA minimo, con stato iniziale 0
+     */
+    public DFA minimizeHopcroft() {
+        return Hopcroft.minimize(this);
+    }
+
+    /**
+     * Sostituisce l'automa con il DFA minimo equivalente calcolato da
+     * {@link #minimize()}, che con transizioni su intervalli delega a
+     * {@link #minimizeHopcroft()}.
+     */
     public void minimizeMe(){
         DFA minima = this.minimize();
         this.finalStates = minima.finalStates;
         this.numberOfStates = minima.numberOfStates;
         this.transitions = minima.transitions;
+        this.ranges = minima.ranges;
+        this.compiled = null;
     }
     
     
 
+    /**
+     * Variante di {@link #minimize()} con la tabella riempita per passi; come
+     * quella delega a {@link #minimizeHopcroft()} se l'automa ha transizioni
+     * su intervalli.
+     */
     public DFA minimize2() {
+        if (!ranges.isEmpty()) {
+            return minimizeHopcroft();
+        }
         //PASSO 1: inizializzazione della tabella (matrice) dell'algoritmo
         int n = numberOfStates;
         boolean[][] eq = new boolean[n][n];		//matrice di boolean usata nell'algoritmo "riempi-tabella"
@@ -736,7 +980,17 @@ public class DFA {
 
     @Override
     public String toString() {
-        return "DFA{" + "numberOfStates=" + numberOfStates + ", finalStates=" + finalStates + ", transitions=" + transitions + '}';
+        String a = "DFA{" + "numberOfStates=" + numberOfStates + ", finalStates=" + finalStates + ", transitions=" + transitions;
+        if (!ranges.isEmpty()) {
+            a = a + ", ranges=[";
+            for (Map.Entry<Integer, TreeMap<Character, int[]>> row : ranges.entrySet()) {
+                for (Map.Entry<Character, int[]> range : row.getValue().entrySet()) {
+                    a = a + " (" + row.getKey() + ",[" + range.getKey() + "-" + (char) range.getValue()[0] + "])->" + range.getValue()[1];
+                }
+            }
+            a = a + " ]";
+        }
+        return a + '}';
     }
 
 }
@@ -0,0 +1,203 @@
+package dfa2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * Costruzione del DFA di un'espressione regolare con le derivate di
+ * Brzozowski. La derivata di e rispetto a ch e` l'espressione che descrive
+ * le stringhe w tali che ch w appartiene al linguaggio di e; gli stati del
+ * DFA sono le derivate successive dell'espressione, e uno stato e` finale se
+ * la sua espressione accetta la stringa vuota.
+ *
+ * Perche' le derivate distinte siano un numero finito le espressioni sono
+ * tenute nella forma normale di {@link RegExps}, che rappresenta ogni
+ * espressione normale con un solo oggetto, quindi i confronti fra stati sono
+ * confronti fra riferimenti. Con le foglie {@link RegExpRange} le derivate
+ * si calcolano una volta per ogni minterm dei simboli e degli intervalli
+ * dell'espressione, e le transizioni del DFA sono intervalli.
+ *
+ * @author SashaAlexandru
+ */
+final class Derivatives {
+
+    /**
+     * Fabbrica delle espressioni normali.
+     */
+    private final RegExps regExps = new RegExps();
+    private final IdentityHashMap<RegExp, Boolean> nullable = new IdentityHashMap<RegExp, Boolean>();
+    /**
+     * Derivate gia` calcolate, con chiave indice &lt;&lt; 16 | simbolo.
+     */
+    private final HashMap<Long, RegExp> derivatives = new HashMap<Long, RegExp>();
+    /**
+     * Estremi dei simboli e degli intervalli che compaiono nell'espressione.
+     */
+    private char[] lo = new char[16];
+    private char[] hi = new char[16];
+    private int intervals;
+
+    private Derivatives() {
+    }
+
+    /**
+     * Calcola il DFA di un'espressione regolare con le derivate. Il DFA e`
+     * completo rispetto ai simboli dell'espressione: l'espressione vuota, se
+     * raggiungibile, e` lo stato pozzo.
+     *
+     * @param e L'espressione
+     * @return Il DFA che riconosce l'espressione, oppure null se
+     * l'espressione contiene nodi che non fanno parte della libreria
+     */
+    static DFA dfa(RegExp e) {
+        Derivatives d = new Derivatives();
+        RegExp start = d.normalize(e);
+        return start != null ? d.explore(start) : null;
+    }
+
+    /**
+     * Visita in ampiezza delle derivate a partire dall'espressione normale
+     * start.
+     */
+    private DFA explore(RegExp start) {
+        DFA dfa = new DFA(1);
+        IdentityHashMap<RegExp, Integer> stateOf = new IdentityHashMap<RegExp, Integer>();
+        ArrayList<RegExp> states = new ArrayList<RegExp>();
+        ArrayDeque<Integer> newStates = new ArrayDeque<Integer>();
+        final char[] minterms = CharClasses.minterms(lo, hi, intervals);
+        stateOf.put(start, 0);
+        states.add(start);
+        newStates.add(0);
+        while (!newStates.isEmpty()) {
+            final int p = newStates.poll();
+            final RegExp e = states.get(p);
+            if (nullable(e)) {
+                dfa.addFinalState(p);
+            }
+            for (int m = 0; m < minterms.length; m += 2) {
+                final char ch = minterms[m];
+                RegExp next = derive(e, ch);
+                Integer q = stateOf.get(next);
+                if (q == null) {
+                    q = dfa.newState();
+                    stateOf.put(next, q);
+                    states.add(next);
+                    newStates.add(q);
+                }
+                if (minterms[m + 1] == ch) {
+                    dfa.setMove(p, ch, q);
+                } else {
+                    dfa.setRange(p, ch, minterms[m + 1], q);
+                }
+            }
+        }
+        return dfa;
+    }
+
+    /**
+     * Restituisce la forma normale di un albero, oppure null se contiene
+     * nodi sconosciuti.
+     */
+    private RegExp normalize(RegExp e) {
+        if (e instanceof RegExpSymbol) {
+            final char ch = ((RegExpSymbol) e).symbol();
+            addInterval(ch, ch);
+            return regExps.symbol(ch);
+        }
+        if (e instanceof RegExpRange) {
+            RegExp r = regExps.range(((RegExpRange) e).lo(), ((RegExpRange) e).hi());
+            if (r instanceof RegExpRange) {
+                addInterval(((RegExpRange) r).lo(), ((RegExpRange) r).hi());
+            } else if (r instanceof RegExpSymbol) {
+                addInterval(((RegExpSymbol) r).symbol(), ((RegExpSymbol) r).symbol());
+            }
+            return r;
+        }
+        if (e instanceof RegExpEpsilon) {
+            return regExps.epsilon();
+        }
+        if (e instanceof RegExpEmpty) {
+            return regExps.empty();
+        }
+        if (e instanceof RegExpSequence) {
+            RegExp l = normalize(((RegExpSequence) e).left());
+            RegExp r = l == null ? null : normalize(((RegExpSequence) e).right());
+            return r == null ? null : regExps.sequence(l, r);
+        }
+        if (e instanceof RegExpChoice) {
+            RegExp l = normalize(((RegExpChoice) e).left());
+            RegExp r = l == null ? null : normalize(((RegExpChoice) e).right());
+            return r == null ? null : regExps.choice(l, r);
+        }
+        if (e instanceof RegExpStar) {
+            RegExp o = normalize(((RegExpStar) e).operand());
+            return o == null ? null : regExps.star(o);
+        }
+        return null;
+    }
+
+    private void addInterval(char l, char h) {
+        if (intervals == lo.length) {
+            lo = Arrays.copyOf(lo, intervals * 2);
+            hi = Arrays.copyOf(hi, intervals * 2);
+        }
+        lo[intervals] = l;
+        hi[intervals] = h;
+        intervals++;
+    }
+
+    /**
+     * Derivata di un'espressione normale rispetto a un simbolo.
+     */
+    private RegExp derive(RegExp e, char ch) {
+        final Long key = (long) regExps.id(e) << 16 | ch;
+        RegExp d = derivatives.get(key);
+        if (d != null) {
+            return d;
+        }
+        if (e instanceof RegExpSymbol) {
+            d = ((RegExpSymbol) e).symbol() == ch ? regExps.epsilon() : regExps.empty();
+        } else if (e instanceof RegExpRange) {
+            RegExpRange r = (RegExpRange) e;
+            d = r.lo() <= ch && ch <= r.hi() ? regExps.epsilon() : regExps.empty();
+        } else if (e instanceof RegExpSequence) {
+            RegExpSequence s = (RegExpSequence) e;
+            d = regExps.sequence(derive(s.left(), ch), s.right());
+            if (nullable(s.left())) {
+                d = regExps.choice(d, derive(s.right(), ch));
+            }
+        } else if (e instanceof RegExpChoice) {
+            RegExpChoice c = (RegExpChoice) e;
+            d = regExps.choice(derive(c.left(), ch), derive(c.right(), ch));
+        } else if (e instanceof RegExpStar) {
+            d = regExps.sequence(derive(((RegExpStar) e).operand(), ch), e);
+        } else {
+            d = regExps.empty(); //epsilon e insieme vuoto
+        }
+        derivatives.put(key, d);
+        return d;
+    }
+
+    /**
+     * Determina se un'espressione normale accetta la stringa vuota.
+     */
+    private boolean nullable(RegExp e) {
+        Boolean known = nullable.get(e);
+        if (known != null) {
+            return known;
+        }
+        boolean result;
+        if (e instanceof RegExpSequence) {
+            result = nullable(((RegExpSequence) e).left()) && nullable(((RegExpSequence) e).right());
+        } else if (e instanceof RegExpChoice) {
+            result = nullable(((RegExpChoice) e).left()) || nullable(((RegExpChoice) e).right());
+        } else {
+            result = e instanceof RegExpStar || e instanceof RegExpEpsilon;
+        }
+        nullable.put(e, result);
+        return result;
+    }
+}
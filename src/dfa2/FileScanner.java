@@ -0,0 +1,273 @@
+package dfa2;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Filtra le righe di un file con un {@link CompiledDFA}. Il file viene mappato
+ * in memoria con {@link FileChannel#map} e diviso in segmenti allineati
+ * all'inizio di una riga; ogni segmento e` riconosciuto da un thread diverso
+ * direttamente sui byte mappati, senza creare oggetti per ogni riga.
+ *
+ * Le righe sono terminate da '\n', eventualmente preceduto da '\r' che non fa
+ * parte della riga; l'ultima riga puo` non essere terminata. Ogni byte e`
+ * letto come il carattere con lo stesso codice (ISO-8859-1), quindi i
+ * caratteri non ASCII di un file UTF-8 arrivano all'automa come sequenze di
+ * byte.
+ *
+ * @author SashaAlexandru
+ */
+public final class FileScanner {
+
+    /**
+     * Dimensione massima di una finestra mappata in memoria.
+     */
+    private static final int WINDOW = 1 << 30;
+    /**
+     * Numero di segmenti assegnati a ogni thread, per bilanciare il carico
+     * quando le righe accettate non sono distribuite uniformemente.
+     */
+    private static final int SEGMENTS_PER_THREAD = 4;
+
+    /**
+     * L'automa che decide quali righe sono accettate.
+     */
+    private final CompiledDFA dfa;
+    /**
+     * Numero di thread usati per una scansione.
+     */
+    private final int threads;
+    /**
+     * <code>byteClass[b]</code> e` la classe del carattere con codice b.
+     */
+    private final int[] byteClass;
+
+    /**
+     * Crea uno scanner che usa un thread per ogni processore disponibile.
+     *
+     * @param dfa L'automa che decide quali righe sono accettate
+     */
+    public FileScanner(CompiledDFA dfa) {
+        this(dfa, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Crea uno scanner che usa un dato numero di thread.
+     *
+     * @param dfa L'automa che decide quali righe sono accettate
+     * @param threads Il numero di thread, almeno 1
+     */
+    public FileScanner(CompiledDFA dfa, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads=" + threads);
+        }
+        this.dfa = dfa;
+        this.threads = threads;
+        byteClass = new int[256];
+        for (int b = 0; b < 256; b++) {
+            byteClass[b] = dfa.classes().classOf((char) b);
+        }
+    }
+
+    /**
+     * Conta le righe del file accettate dall'automa.
+     *
+     * @param file Il file da leggere
+     * @return Il numero di righe accettate
+     * @throws IOException se il file non puo` essere letto
+     */
+    public long count(Path file) throws IOException {
+        long count = 0;
+        for (Segment s : scan(file, false)) {
+            count += s.count;
+        }
+        return count;
+    }
+
+    /**
+     * Restituisce le posizioni, in byte dall'inizio del file, delle righe
+     * accettate dall'automa.
+     *
+     * @param file Il file da leggere
+     * @return Le posizioni di inizio delle righe accettate, in ordine
+     * crescente
+     * @throws IOException se il file non puo` essere letto
+     */
+    public long[] offsets(Path file) throws IOException {
+        ArrayList<Segment> segments = scan(file, true);
+        long total = 0;
+        for (Segment s : segments) {
+            total += s.count;
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IOException("Too many matching lines: " + total);
+        }
+        long[] offsets = new long[(int) total];
+        int k = 0;
+        for (Segment s : segments) {
+            System.arraycopy(s.offsets, 0, offsets, k, (int) s.count);
+            k += (int) s.count;
+        }
+        return offsets;
+    }
+
+    /**
+     * Divide il file in segmenti e li riconosce in parallelo.
+     */
+    private ArrayList<Segment> scan(Path file, boolean keepOffsets) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            ArrayList<Segment> segments = new ArrayList<>();
+            if (size == 0) {
+                return segments;
+            }
+            long parts = Math.min(size, (long) threads * SEGMENTS_PER_THREAD);
+            long start = 0;
+            for (long k = 1; k <= parts && start < size; k++) {
+                long end = k == parts ? size : Math.max(start, lineStart(channel, size * k / parts, size));
+                if (end > start) {
+                    segments.add(new Segment(channel, start, end, keepOffsets));
+                    start = end;
+                }
+            }
+            if (segments.size() == 1) {
+                segments.get(0).call();
+                return segments;
+            }
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, segments.size()));
+            try {
+                ArrayList<Future<Segment>> results = new ArrayList<>();
+                for (Segment s : segments) {
+                    results.add(pool.submit(s));
+                }
+                for (Future<Segment> f : results) {
+                    f.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+            return segments;
+        }
+    }
+
+    /**
+     * Restituisce la posizione della prima riga che inizia in
+     * <code>position</code> o dopo, oppure <code>size</code> se non ce ne sono.
+     */
+    private static long lineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        long pos = position - 1; //la riga inizia in position se il byte precedente e` '\n'
+        while (pos < size) {
+            buf.clear();
+            int n = channel.read(buf, pos);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    /**
+     * Un segmento del file che inizia all'inizio di una riga e termina alla
+     * fine di una riga (o alla fine del file). Il risultato della scansione
+     * viene memorizzato nel segmento stesso.
+     */
+    private final class Segment implements Callable<Segment> {
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        /**
+         * Posizioni delle righe accettate, solo se richieste.
+         */
+        private long[] offsets;
+        /**
+         * Numero di righe accettate.
+         */
+        private long count;
+
+        Segment(FileChannel channel, long start, long end, boolean keepOffsets) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.offsets = keepOffsets ? new long[16] : null;
+        }
+
+        @Override
+        public Segment call() throws IOException {
+            final int[] table = dfa.table();
+            final int width = dfa.width();
+            final int initial = dfa.initialState();
+            int p = initial;
+            int beforeCr = CompiledDFA.DEAD; //stato prima di un '\r' appena letto
+            boolean cr = false;
+            long lineStart = start;
+            for (long base = start; base < end; base += WINDOW) {
+                int length = (int) Math.min(WINDOW, end - base);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, base, length);
+                for (int i = 0; i < length; i++) {
+                    int b = window.get(i) & 0xFF;
+                    if (b == '\n') {
+                        if (dfa.finalState(cr ? beforeCr : p)) {
+                            accept(lineStart);
+                        }
+                        lineStart = base + i + 1;
+                        p = initial;
+                        cr = false;
+                    } else {
+                        cr = b == '\r';
+                        if (cr) {
+                            beforeCr = p;
+                        }
+                        if (p >= 0) {
+                            p = table[p * width + byteClass[b]];
+                        }
+                    }
+                }
+            }
+            if (lineStart < end && dfa.finalState(cr ? beforeCr : p)) {
+                accept(lineStart);
+            }
+            return this;
+        }
+
+        /**
+         * Registra una riga accettata.
+         */
+        private void accept(long lineStart) {
+            if (offsets != null) {
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                }
+                offsets[(int) count] = lineStart;
+            }
+            count++;
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package dfa2;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Minimizzazione di un {@link DFA} per raffinamento di partizioni, nella
+ * variante di Valmari e Lehtinen dell'algoritmo di Hopcroft. Oltre alla
+ * partizione degli stati (blocchi) si mantiene una partizione delle
+ * transizioni (corde), inizialmente per simbolo: ogni corda divide i blocchi
+ * secondo lo stato di partenza delle sue transizioni, e ogni blocco nuovo
+ * divide le corde secondo lo stato di arrivo. Si usa come divisore solo la
+ * parte piu` piccola di un blocco spezzato, quindi ogni transizione viene
+ * esaminata O(log n) volte e il tempo e` O(m log n), con m il numero di
+ * transizioni, anche per alfabeti grandi; la memoria e` O(n + m).
+ *
+ * Le transizioni mancanti portano in un pozzo implicito, quindi il DFA non
+ * deve essere completo. I simboli sono i minterm dell'automa, cosi` che anche
+ * le transizioni su intervalli vengano minimizzate.
+ *
+ * @author SashaAlexandru
+ */
+final class Hopcroft {
+
+    /**
+     * Minterm del DFA, come coppie di estremi.
+     */
+    private final char[] minterms;
+    /**
+     * Transizioni: la transizione t va da <code>tail[t]</code> a
+     * <code>head[t]</code> con il minterm <code>label[t]</code>.
+     */
+    private int[] tail = new int[16];
+    private int[] label = new int[16];
+    private int[] head = new int[16];
+    private int edges;
+
+    private Hopcroft(DFA dfa) {
+        minterms = dfa.minterms();
+        HashMap<Move, Integer> moves = dfa.getTransitions();
+        for (Map.Entry<Move, Integer> move : moves.entrySet()) {
+            addEdge(move.getKey().start, symbol(move.getKey().ch), move.getValue());
+        }
+        for (Map.Entry<Integer, TreeMap<Character, int[]>> row : dfa.getRanges().entrySet()) {
+            final int p = row.getKey();
+            for (Map.Entry<Character, int[]> range : row.getValue().entrySet()) {
+                final int hi = range.getValue()[0];
+                for (int s = symbol(range.getKey()); s < minterms.length / 2 && minterms[2 * s] <= hi; s++) {
+                    //le mosse su un singolo simbolo hanno la precedenza
+                    final char lo = minterms[2 * s];
+                    if (lo != minterms[2 * s + 1] || !moves.containsKey(new Move(p, lo))) {
+                        addEdge(p, s, range.getValue()[1]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Calcola il DFA minimo equivalente a un DFA, anche parziale. Il
+     * risultato non ha stati irraggiungibili ne' stati pozzo: le sue
+     * transizioni mancanti rifiutano l'input. Se il linguaggio e` vuoto il
+     * risultato ha un solo stato, non finale e senza transizioni.
+     *
+     * @param dfa Il DFA da minimizzare, con stato iniziale 0
+     * @return Il DFA minimo
+     */
+    static DFA minimize(DFA dfa) {
+        return new Hopcroft(dfa).run(dfa);
+    }
+
+    private DFA run(DFA dfa) {
+        final int n = dfa.getNumberOfStates();
+        if (n == 0) {
+            return new DFA(1);
+        }
+        //si tengono solo gli stati raggiungibili da 0 da cui si raggiunge
+        //uno stato finale
+        final boolean[] reached = visit(n, tail, head, new int[]{0});
+        int finals = 0;
+        int[] roots = new int[n];
+        for (int p = 0; p < n; p++) {
+            if (dfa.finalState(p)) {
+                roots[finals++] = p;
+            }
+        }
+        final boolean[] useful = visit(n, head, tail, Arrays.copyOf(roots, finals));
+        if (!reached[0] || !useful[0]) {
+            return new DFA(1);
+        }
+        int[] number = new int[n];
+        int states = 0;
+        for (int p = 0; p < n; p++) {
+            number[p] = reached[p] && useful[p] ? states++ : -1;
+        }
+        int m = 0;
+        for (int t = 0; t < edges; t++) {
+            if (number[tail[t]] >= 0 && number[head[t]] >= 0) {
+                tail[m] = number[tail[t]];
+                label[m] = label[t];
+                head[m] = number[head[t]];
+                m++;
+            }
+        }
+        edges = m;
+
+        //blocchi: finali e non finali
+        Partition blocks = new Partition(states);
+        for (int p = 0; p < n; p++) {
+            if (number[p] >= 0 && dfa.finalState(p)) {
+                blocks.mark(number[p]);
+            }
+        }
+        blocks.split();
+
+        //corde: transizioni raggruppate per simbolo (counting sort)
+        final int width = minterms.length / 2;
+        int[] start = new int[width + 1];
+        for (int t = 0; t < m; t++) {
+            start[label[t] + 1]++;
+        }
+        for (int s = 0; s < width; s++) {
+            start[s + 1] += start[s];
+        }
+        Partition cords = new Partition(m);
+        int[] next = Arrays.copyOf(start, width);
+        for (int t = 0; t < m; t++) {
+            final int i = next[label[t]]++;
+            cords.elements[i] = t;
+            cords.location[t] = i;
+        }
+        cords.sets = 0;
+        for (int s = 0; s < width; s++) {
+            if (start[s] < start[s + 1]) {
+                cords.first[cords.sets] = start[s];
+                cords.past[cords.sets] = start[s + 1];
+                for (int i = start[s]; i < start[s + 1]; i++) {
+                    cords.set[cords.elements[i]] = cords.sets;
+                }
+                cords.sets++;
+            }
+        }
+
+        //transizioni entranti in ogni stato
+        int[] inStart = new int[states + 1];
+        for (int t = 0; t < m; t++) {
+            inStart[head[t] + 1]++;
+        }
+        for (int p = 0; p < states; p++) {
+            inStart[p + 1] += inStart[p];
+        }
+        int[] incoming = new int[m];
+        next = Arrays.copyOf(inStart, states);
+        for (int t = 0; t < m; t++) {
+            incoming[next[head[t]]++] = t;
+        }
+
+        //raffinamento
+        int b = 1;
+        int c = 0;
+        while (c < cords.sets) {
+            for (int i = cords.first[c]; i < cords.past[c]; i++) {
+                blocks.mark(tail[cords.elements[i]]);
+            }
+            blocks.split();
+            c++;
+            while (b < blocks.sets) {
+                for (int i = blocks.first[b]; i < blocks.past[b]; i++) {
+                    final int q = blocks.elements[i];
+                    for (int j = inStart[q]; j < inStart[q + 1]; j++) {
+                        cords.mark(incoming[j]);
+                    }
+                }
+                cords.split();
+                b++;
+            }
+        }
+        return quotient(dfa, number, blocks);
+    }
+
+    /**
+     * Costruisce il DFA dei blocchi, numerati in ordine di visita in ampiezza
+     * a partire dal blocco dello stato iniziale.
+     */
+    private DFA quotient(DFA dfa, int[] number, Partition blocks) {
+        final int states = number.length;
+        int[] original = new int[blocks.elements.length];
+        for (int p = 0; p < states; p++) {
+            if (number[p] >= 0) {
+                original[number[p]] = p;
+            }
+        }
+        //transizioni uscenti da ogni stato
+        int[] outStart = new int[blocks.elements.length + 1];
+        for (int t = 0; t < edges; t++) {
+            outStart[tail[t] + 1]++;
+        }
+        for (int p = 0; p < blocks.elements.length; p++) {
+            outStart[p + 1] += outStart[p];
+        }
+        int[] outgoing = new int[edges];
+        int[] next = Arrays.copyOf(outStart, blocks.elements.length);
+        for (int t = 0; t < edges; t++) {
+            outgoing[next[tail[t]]++] = t;
+        }
+
+        int[] id = new int[blocks.sets];
+        Arrays.fill(id, -1);
+        int[] order = new int[blocks.sets];
+        int size = 0;
+        id[blocks.set[0]] = size;
+        order[size++] = blocks.set[0];
+        DFA min = new DFA(blocks.sets);
+        for (int k = 0; k < size; k++) {
+            final int r = blocks.elements[blocks.first[order[k]]]; //rappresentante
+            if (dfa.finalState(original[r])) {
+                min.addFinalState(k);
+            }
+            for (int j = outStart[r]; j < outStart[r + 1]; j++) {
+                final int t = outgoing[j];
+                final int target = blocks.set[head[t]];
+                if (id[target] < 0) {
+                    id[target] = size;
+                    order[size++] = target;
+                }
+                final char lo = minterms[2 * label[t]];
+                final char hi = minterms[2 * label[t] + 1];
+                if (lo == hi) {
+                    min.setMove(k, lo, id[target]);
+                } else {
+                    min.setRange(k, lo, hi, id[target]);
+                }
+            }
+        }
+        return min;
+    }
+
+    /**
+     * Visita in ampiezza del grafo degli archi from[t] -&gt; to[t] a partire
+     * da alcuni stati.
+     */
+    private boolean[] visit(int n, int[] from, int[] to, int[] roots) {
+        int[] start = new int[n + 1];
+        for (int t = 0; t < edges; t++) {
+            start[from[t] + 1]++;
+        }
+        for (int p = 0; p < n; p++) {
+            start[p + 1] += start[p];
+        }
+        int[] adjacent = new int[edges];
+        int[] next = Arrays.copyOf(start, n);
+        for (int t = 0; t < edges; t++) {
+            adjacent[next[from[t]]++] = to[t];
+        }
+        boolean[] seen = new boolean[n];
+        int[] queue = new int[n];
+        int tailOfQueue = 0;
+        for (int p : roots) {
+            seen[p] = true;
+            queue[tailOfQueue++] = p;
+        }
+        for (int headOfQueue = 0; headOfQueue < tailOfQueue; headOfQueue++) {
+            final int p = queue[headOfQueue];
+            for (int j = start[p]; j < start[p + 1]; j++) {
+                if (!seen[adjacent[j]]) {
+                    seen[adjacent[j]] = true;
+                    queue[tailOfQueue++] = adjacent[j];
+                }
+            }
+        }
+        return seen;
+    }
+
+    /**
+     * Restituisce l'indice del minterm che contiene ch.
+     */
+    private int symbol(char ch) {
+        int low = 0;
+        int high = minterms.length / 2 - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (minterms[2 * mid] <= ch) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void addEdge(int p, int s, int q) {
+        if (edges == tail.length) {
+            tail = Arrays.copyOf(tail, edges * 2);
+            label = Arrays.copyOf(label, edges * 2);
+            head = Arrays.copyOf(head, edges * 2);
+        }
+        tail[edges] = p;
+        label[edges] = s;
+        head[edges] = q;
+        edges++;
+    }
+
+    /**
+     * Partizione raffinabile degli interi [0, n). Gli elementi di ogni
+     * insieme sono contigui in <code>elements</code>; quelli marcati sono in
+     * testa, e {@link #split()} separa le parti marcate da quelle non marcate
+     * mettendo la piu` piccola in un insieme nuovo.
+     */
+    private static final class Partition {
+
+        int sets;
+        /**
+         * Elementi ordinati per insieme.
+         */
+        final int[] elements;
+        /**
+         * <code>location[e]</code> e` la posizione di e in elements.
+         */
+        final int[] location;
+        /**
+         * <code>set[e]</code> e` l'insieme di e.
+         */
+        final int[] set;
+        /**
+         * L'insieme s occupa <code>elements[first[s], past[s])</code>.
+         */
+        final int[] first;
+        final int[] past;
+        /**
+         * Numero di elementi marcati di ogni insieme.
+         */
+        final int[] marked;
+        /**
+         * Insiemi con almeno un elemento marcato.
+         */
+        final int[] touched;
+        int touchedSize;
+
+        Partition(int n) {
+            sets = n > 0 ? 1 : 0;
+            elements = new int[n];
+            location = new int[n];
+            set = new int[n];
+            first = new int[Math.max(1, n)];
+            past = new int[Math.max(1, n)];
+            marked = new int[Math.max(1, n)];
+            touched = new int[Math.max(1, n)];
+            for (int e = 0; e < n; e++) {
+                elements[e] = e;
+                location[e] = e;
+            }
+            past[0] = n;
+        }
+
+        void mark(int e) {
+            final int s = set[e];
+            final int i = location[e];
+            final int j = first[s] + marked[s];
+            if (i < j) {
+                return; //gia` marcato
+            }
+            elements[i] = elements[j];
+            location[elements[i]] = i;
+            elements[j] = e;
+            location[e] = j;
+            if (marked[s]++ == 0) {
+                touched[touchedSize++] = s;
+            }
+        }
+
+        void split() {
+            while (touchedSize > 0) {
+                final int s = touched[--touchedSize];
+                final int j = first[s] + marked[s];
+                if (j == past[s]) {
+                    marked[s] = 0;
+                    continue;
+                }
+                //la parte piu` piccola diventa l'insieme nuovo
+                if (marked[s] <= past[s] - j) {
+                    first[sets] = first[s];
+                    past[sets] = j;
+                    first[s] = j;
+                } else {
+                    past[sets] = past[s];
+                    first[sets] = j;
+                    past[s] = j;
+                }
+                for (int i = first[sets]; i < past[sets]; i++) {
+                    set[elements[i]] = sets;
+                }
+                marked[s] = 0;
+                marked[sets] = 0;
+                sets++;
+            }
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package dfa2;
+
+import java.util.Arrays;
+
+/**
+ * Automa deterministico costruito a partire da un {@link NFA} solo per le
+ * parti raggiunte dall'input. Ogni stato e` l'insieme (epsilon chiuso) degli
+ * stati del NFA in cui l'automa puo` trovarsi, e la sua transizione con un
+ * simbolo (o con un minterm, se il NFA ha transizioni su intervalli) viene
+ * calcolata la prima volta che serve e poi ricordata.
+ *
+ * Gli stati ricordati sono al piu` <code>maxStates</code>: quando la cache e`
+ * piena viene svuotata e la costruzione riparte dallo stato corrente, quindi
+ * la memoria resta limitata anche per gli automi il cui DFA equivalente ha un
+ * numero esponenziale di stati, mentre sugli input tipici quasi tutte le
+ * transizioni sono gia` in cache e il costo e` vicino a quello di un DFA.
+ *
+ * Un oggetto di questa classe non e` thread-safe.
+ *
+ * @author SashaAlexandru
+ */
+public final class LazyDFA implements Recognizer {
+
+    /**
+     * Numero massimo predefinito di stati in cache.
+     */
+    public static final int DEFAULT_MAX_STATES = 4096;
+    /**
+     * Stato pozzo: l'insieme vuoto di stati del NFA.
+     */
+    private static final int DEAD = -1;
+    /**
+     * Transizione non ancora calcolata.
+     */
+    private static final int UNKNOWN = -2;
+    /**
+     * Blocco condiviso per tutti i caratteri che non compaiono nell'alfabeto.
+     */
+    private static final int[] EMPTY_BLOCK = new int[256];
+
+    static {
+        Arrays.fill(EMPTY_BLOCK, -1);
+    }
+
+    /**
+     * L'indice delle transizioni del NFA.
+     */
+    private final NFA.Index index;
+    /**
+     * <code>nfaFinal[q]</code> e` true se lo stato q del NFA e` finale.
+     */
+    private final boolean[] nfaFinal;
+    /**
+     * <code>blocks[ch &gt;&gt;&gt; 8][ch &amp; 0xFF]</code> e` l'indice del
+     * minterm di ch, oppure -1 se nessuna transizione legge ch.
+     */
+    private final int[][] blocks;
+    /**
+     * Numero di minterm del NFA.
+     */
+    private final int width;
+    /**
+     * Numero massimo di stati in cache.
+     */
+    private final int maxStates;
+    /**
+     * Epsilon chiusura dello stato iniziale del NFA.
+     */
+    private final int[] initialSet;
+
+    /**
+     * Insiemi di stati del NFA in cache: l'indice di un insieme e` il suo
+     * stato.
+     */
+    private final StateSetTable sets = new StateSetTable();
+    /**
+     * <code>finals[p]</code> e` true se lo stato p in cache e` finale.
+     */
+    private boolean[] finals;
+    /**
+     * <code>table[p * width + s]</code> e` lo stato raggiunto da p con il
+     * minterm di indice s, {@link #DEAD} oppure {@link #UNKNOWN}.
+     */
+    private int[] table;
+    /**
+     * Numero di volte che la cache e` stata svuotata.
+     */
+    private long flushes;
+    /**
+     * Marcatori usati per calcolare l'unione delle chiusure senza duplicati.
+     */
+    private final int[] mark;
+    private int stamp;
+    private int[] buffer;
+
+    /**
+     * Crea un automa con la cache di dimensione predefinita.
+     *
+     * @param nfa L'automa non deterministico, con stato iniziale 0
+     */
+    public LazyDFA(NFA nfa) {
+        this(nfa, DEFAULT_MAX_STATES);
+    }
+
+    /**
+     * Crea un automa con una cache di dimensione data. Le modifiche
+     * successive del NFA non si riflettono su questo automa.
+     *
+     * @param nfa L'automa non deterministico, con stato iniziale 0
+     * @param maxStates Il numero massimo di stati in cache, almeno 2
+     */
+    public LazyDFA(NFA nfa, int maxStates) {
+        if (maxStates < 2) {
+            throw new IllegalArgumentException("maxStates=" + maxStates);
+        }
+        this.maxStates = maxStates;
+        final int n = nfa.numberOfStates();
+        index = nfa.index();
+        nfaFinal = new boolean[n];
+        for (int q = 0; q < n; q++) {
+            nfaFinal[q] = nfa.finalState(q);
+        }
+        final char[] minterms = index.minterms;
+        width = minterms.length / 2;
+        blocks = new int[256][];
+        Arrays.fill(blocks, EMPTY_BLOCK);
+        //come in CharClasses, i blocchi interamente dentro un minterm ne
+        //condividono uno solo e gli altri si riempiono per intervalli
+        for (int s = 0; s < width; s++) {
+            final int lo = minterms[2 * s];
+            final int hi = minterms[2 * s + 1];
+            int[] uniform = null;
+            for (int b = lo >>> 8; b <= hi >>> 8; b++) {
+                final int from = Math.max(lo, b << 8);
+                final int to = Math.min(hi, b << 8 | 0xFF);
+                if (to - from == 0xFF) {
+                    if (uniform == null) {
+                        uniform = new int[256];
+                        Arrays.fill(uniform, s);
+                    }
+                    blocks[b] = uniform;
+                } else {
+                    if (blocks[b] == EMPTY_BLOCK) {
+                        blocks[b] = EMPTY_BLOCK.clone();
+                    }
+                    Arrays.fill(blocks[b], from & 0xFF, (to & 0xFF) + 1, s);
+                }
+            }
+        }
+        mark = new int[n];
+        buffer = new int[Math.max(1, n)];
+        initialSet = n > 0 ? index.closure(0) : new int[0];
+        int capacity = Math.min(maxStates, 16);
+        finals = new boolean[capacity];
+        table = new int[capacity * width];
+        intern(initialSet);
+    }
+
+    /**
+     * Restituisce lo stato iniziale. Lo stato iniziale e` sempre in cache.
+     *
+     * @return Lo stato iniziale, oppure -1 se l'automa non ha stati
+     */
+    public int initialState() {
+        return initialSet.length > 0 ? 0 : DEAD;
+    }
+
+    /**
+     * Determina se uno stato in cache e` finale.
+     *
+     * @param p Uno stato restituito da {@link #move} o {@link #initialState}
+     * @return true se lo stato e` finale
+     */
+    public boolean finalState(int p) {
+        return p >= 0 && finals[p];
+    }
+
+    /**
+     * Esegue una mossa dell'automa, calcolandola se non e` in cache. Se la
+     * cache viene svuotata gli stati restituiti in precedenza, tranne quello
+     * iniziale, non sono piu` validi.
+     *
+     * @param p Lo stato di partenza
+     * @param ch Il simbolo da riconoscere
+     * @return Lo stato di arrivo, oppure -1 se nessuna continuazione
+     * dell'input puo` essere accettata
+     */
+    public int move(int p, char ch) {
+        if (p < 0) {
+            return DEAD;
+        }
+        final int s = blocks[ch >>> 8][ch & 0xFF];
+        if (s < 0) {
+            return DEAD;
+        }
+        final int q = table[p * width + s];
+        return q != UNKNOWN ? q : computeMove(p, ch, s);
+    }
+
+    /**
+     * Riconosce una stringa.
+     *
+     * @param s La stringa da riconoscere
+     * @return true se la stringa e` accettata
+     */
+    @Override
+    public boolean scan(CharSequence s) {
+        int p = initialState();
+        for (int i = 0; i < s.length() && p >= 0; i++) {
+            p = move(p, s.charAt(i));
+        }
+        return finalState(p);
+    }
+
+    /**
+     * Riconosce la porzione <code>a[offset, offset + length)</code> di un
+     * array.
+     *
+     * @param a L'array che contiene l'input
+     * @param offset L'indice del primo carattere da leggere
+     * @param length Il numero di caratteri da leggere
+     * @return true se la porzione e` accettata
+     * @throws IndexOutOfBoundsException se la porzione non e` contenuta in a
+     */
+    @Override
+    public boolean scan(char[] a, int offset, int length) {
+        CompiledDFA.checkSlice(a, offset, length);
+        int p = initialState();
+        for (int i = offset; i < offset + length && p >= 0; i++) {
+            p = move(p, a[i]);
+        }
+        return finalState(p);
+    }
+
+    /**
+     * Restituisce il numero di stati attualmente in cache.
+     *
+     * @return Numero di stati in cache
+     */
+    public int numberOfCachedStates() {
+        return sets.size();
+    }
+
+    /**
+     * Restituisce il numero di volte che la cache e` stata svuotata perche`
+     * piena.
+     *
+     * @return Numero di svuotamenti
+     */
+    public long flushes() {
+        return flushes;
+    }
+
+    /**
+     * Calcola la mossa dallo stato p con il simbolo ch di indice s e la
+     * ricorda in cache.
+     */
+    private int computeMove(int p, char ch, int s) {
+        //unione delle chiusure degli stati di arrivo, senza duplicati
+        stamp++;
+        int size = 0;
+        for (int r : sets.get(p)) {
+            final int k = index.find(r, ch);
+            if (k >= 0) {
+                for (int i = index.targetStart[k]; i < index.targetStart[k + 1]; i++) {
+                    size = addClosure(index.targets[i], size);
+                }
+            }
+            for (int j = index.rangeStart[r]; j < index.rangeStart[r + 1]; j++) {
+                if (index.inRange(j, ch)) {
+                    size = addClosure(index.rangeTargets[j], size);
+                }
+            }
+        }
+        if (size == 0) {
+            table[p * width + s] = DEAD;
+            return DEAD;
+        }
+        Arrays.sort(buffer, 0, size);
+        final int known = sets.find(buffer, size);
+        if (known >= 0) {
+            table[p * width + s] = known;
+            return known;
+        }
+        int[] set = Arrays.copyOf(buffer, size);
+        if (sets.size() == maxStates) {
+            //cache piena: si riparte dal solo stato iniziale, p non serve piu`
+            flush();
+            return intern(set);
+        }
+        final int q = intern(set);
+        table[p * width + s] = q;
+        return q;
+    }
+
+    /**
+     * Aggiunge a <code>buffer[0, size)</code> gli stati non marcati della
+     * chiusura di q e restituisce la nuova dimensione.
+     */
+    private int addClosure(int q, int size) {
+        for (int r : index.closure(q)) {
+            if (mark[r] != stamp) {
+                mark[r] = stamp;
+                if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, size * 2);
+                }
+                buffer[size++] = r;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Aggiunge alla cache un insieme di stati del NFA che non vi compare.
+     */
+    private int intern(int[] set) {
+        final int p = sets.add(set);
+        if (p == finals.length) {
+            int capacity = (int) Math.min(maxStates, 2L * finals.length);
+            finals = Arrays.copyOf(finals, capacity);
+            table = Arrays.copyOf(table, capacity * width);
+        }
+        boolean accepting = false;
+        for (int q : set) {
+            accepting |= nfaFinal[q];
+        }
+        finals[p] = accepting;
+        Arrays.fill(table, p * width, (p + 1) * width, UNKNOWN);
+        return p;
+    }
+
+    /**
+     * Svuota la cache lasciando solo lo stato iniziale.
+     */
+    private void flush() {
+        flushes++;
+        sets.clear();
+        intern(initialSet);
+    }
+
+    @Override
+    public String toString() {
+        return "LazyDFA{" + "cachedStates=" + sets.size() + ", maxStates=" + maxStates + ", flushes=" + flushes + '}';
+    }
+}
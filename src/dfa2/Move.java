@@ -24,9 +24,14 @@ public class Move {
         this.ch = ch;
     }
 
+    /**
+     * Con start ^ ch le mosse di n stati su n simboli hanno solo O(n) codici
+     * distinti e le tabelle di transizione diventano quadratiche; la
+     * moltiplicazione per una costante dispari sparge gli stati su tutti i bit.
+     */
     @Override
     public int hashCode() {
-        return start ^ (int)ch;
+        return start * 0x9E3779B1 + ch;
     }
 
     @Override
@@ -1,9 +1,13 @@
 package dfa2;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.HashMap;
 import java.util.Stack;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Un oggetto della classe NFA rappresenta un automa a stati finiti non
@@ -33,6 +37,23 @@ public class NFA {
      */
     private HashMap<Move, HashSet<Integer>> transitions;
 
+    /**
+     * Transizioni etichettate da intervalli di caratteri, come quadruple
+     * {partenza, primo carattere, ultimo carattere, arrivo}.
+     */
+    private ArrayList<int[]> ranges;
+
+    /**
+     * Indice delle transizioni in forma compressa (CSR), calcolato alla prima
+     * mossa dopo ogni modifica dell'automa.
+     */
+    private Index index;
+
+    /**
+     * Simulazione diretta dell'automa, creata al primo uso dopo ogni modifica.
+     */
+    private BitNFA simulator;
+
     /**
      * Crea un NFA con un dato numero di stati.
      *
@@ -43,6 +64,37 @@ public class NFA {
         finalStates = new HashSet<Integer>();
         //la funzione di transizione ritorna un insieme di stati per un solo carattere
         transitions = new HashMap<Move, HashSet<Integer>>();
+        ranges = new ArrayList<int[]>();
+    }
+
+    /**
+     * Crea un NFA a partire da un indice delle transizioni gia` calcolato,
+     * senza controllare le mosse una per una. Usato da {@link NFABuilder}.
+     *
+     * @param n Il numero di stati dell'automa.
+     * @param index Le transizioni dell'automa, senza duplicati.
+     * @param finals Gli stati finali.
+     */
+    NFA(int n, Index index, HashSet<Integer> finals) {
+        numberOfStates = n;
+        finalStates = finals;
+        transitions = new HashMap<Move, HashSet<Integer>>();
+        for (int p = 0; p < n; p++) {
+            for (int k = index.rowStart[p]; k < index.rowStart[p + 1]; k++) {
+                HashSet<Integer> targets = new HashSet<Integer>();
+                for (int i = index.targetStart[k]; i < index.targetStart[k + 1]; i++) {
+                    targets.add(index.targets[i]);
+                }
+                transitions.put(new Move(p, index.labels[k]), targets);
+            }
+        }
+        ranges = new ArrayList<int[]>();
+        for (int p = 0; p < n; p++) {
+            for (int j = index.rangeStart[p]; j < index.rangeStart[p + 1]; j++) {
+                ranges.add(new int[]{p, index.rangeLo[j], index.rangeHi[j], index.rangeTargets[j]});
+            }
+        }
+        this.index = index;
     }
 
     /**
@@ -51,6 +103,8 @@ public class NFA {
      * @return L'indice del nuovo stato creato
      */
     public int newState() {
+        index = null;
+        simulator = null;
         return numberOfStates++;
     }
 
@@ -64,6 +118,7 @@ public class NFA {
     public boolean addFinalState(int p) {
         if (validState(p)) {
             finalStates.add(p);
+            simulator = null;
             return true;
         } else {
             return false;
@@ -114,27 +169,45 @@ public class NFA {
      */
     public boolean addMove(int p, char ch, int q) {
         if (validState(p) && validState(q)) {
+            index = null;
+            simulator = null;
             Move toAdd = new Move(p, ch);
-            boolean found = false;
-            for (Move aMove : transitions.keySet()) {
-                //Se esiste gia una mossa da p leggendo ch che va in x allora aggiungere p leggendo ch che va in q
-                if (toAdd.equals(aMove)) {
-                    found = true;
-                    transitions.get(aMove).add(q);
-                    return true;
-                }
-            }
+            //Se esiste gia una mossa da p leggendo ch che va in x allora aggiungere p leggendo ch che va in q
+            HashSet<Integer> resultT = transitions.get(toAdd);
             //se non esiste gia una mossa da p leggendo ch allora si aggiunge la mossa alle transizioni
-            if (!found) {
-                HashSet<Integer> resultT = new HashSet<Integer>();
-                resultT.add(q);
+            if (resultT == null) {
+                resultT = new HashSet<Integer>();
                 transitions.put(toAdd, resultT);
-                return true;
             }
+            resultT.add(q);
+            return true;
         } else {
             return false;
         }
-        return false;
+    }
+
+    /**
+     * Aggiunge una transizione etichettata da tutti i caratteri di un
+     * intervallo, senza aggiungere una mossa per ogni carattere.
+     *
+     * @param p Lo stato di partenza della transizione.
+     * @param lo Il primo carattere dell'intervallo, diverso da EPSILON.
+     * @param hi L'ultimo carattere dell'intervallo, incluso.
+     * @param q Lo stato di arrivo della transizione.
+     * @return <code>true</code> se gli stati sono validi e l'intervallo non e`
+     * vuoto, <code>false</code> altrimenti.
+     */
+    public boolean addRange(int p, char lo, char hi, int q) {
+        if (!validState(p) || !validState(q) || lo == EPSILON || lo > hi) {
+            return false;
+        }
+        if (lo == hi) {
+            return addMove(p, lo, q);
+        }
+        index = null;
+        simulator = null;
+        ranges.add(new int[]{p, lo, hi, q});
+        return true;
     }
 
     /**
@@ -157,16 +230,15 @@ public class NFA {
     /**
      * Restituisce l'alfabeto dell'automa, ovvero l'insieme di simboli che
      * compaiono come etichette delle transizioni dell'automa. Notare che
-     * <code>EPSILON</code> non e` un simbolo.
+     * <code>EPSILON</code> non e` un simbolo. I caratteri delle transizioni
+     * su intervalli non fanno parte dell'alfabeto.
      *
      * @return L'alfabeto dell'automa.
      */
     public HashSet<Character> alphabet() {
         HashSet<Character> alphabet = new HashSet<Character>();
-        for (Move move : transitions.keySet()) {
-            if (move.getCh() != NFA.EPSILON) {
-                alphabet.add(move.getCh());
-            }
+        for (char ch : index().alphabet) {
+            alphabet.add(ch);
         }
         return alphabet;
     }
@@ -180,14 +252,22 @@ public class NFA {
      * puo` essere vuoto.
      */
     public HashSet<Integer> move(int p, char ch) {
-        HashSet<Integer> move = null;
-        Move mosa = new Move(p, ch);
-        for (Move key : transitions.keySet()) {
-            if (key.equals(mosa)) {
-                move = transitions.get(key);
+        final Index idx = index();
+        final int k = idx.find(p, ch);
+        HashSet<Integer> move = new HashSet<Integer>();
+        if (k >= 0) {
+            for (int i = idx.targetStart[k]; i < idx.targetStart[k + 1]; i++) {
+                move.add(idx.targets[i]);
             }
         }
-        return move;
+        if (validState(p) && ch != EPSILON) {
+            for (int j = idx.rangeStart[p]; j < idx.rangeStart[p + 1]; j++) {
+                if (idx.inRange(j, ch)) {
+                    move.add(idx.rangeTargets[j]);
+                }
+            }
+        }
+        return move.isEmpty() ? null : move;
     }
 
     /**
@@ -199,10 +279,21 @@ public class NFA {
      * puo` essere vuoto.
      */
     public HashSet<Integer> move(HashSet<Integer> s, char ch) {
+        final Index idx = index();
         HashSet<Integer> qset = new HashSet<Integer>();
         for (int p : s) {
-            if (move(p, ch) != null) {
-                qset.addAll(move(p, ch));
+            final int k = idx.find(p, ch);
+            if (k >= 0) {
+                for (int i = idx.targetStart[k]; i < idx.targetStart[k + 1]; i++) {
+                    qset.add(idx.targets[i]);
+                }
+            }
+            if (validState(p) && ch != EPSILON) {
+                for (int j = idx.rangeStart[p]; j < idx.rangeStart[p + 1]; j++) {
+                    if (idx.inRange(j, ch)) {
+                        qset.add(idx.rangeTargets[j]);
+                    }
+                }
             }
         }
         return qset;
@@ -216,52 +307,33 @@ public class NFA {
      * <code>s</code> per mezzo di zero o piu` epsilon transizioni.
      */
     public HashSet<Integer> epsilonClosure(HashSet<Integer> s) {
+        final Index idx = index();
         HashSet<Integer> qset = new HashSet<Integer>();
+        // unione delle chiusure precalcolate degli stati di s
         for (int p : s) {
-            qset.addAll(epsilonClosure(p));
+            if (!validState(p)) {
+                qset.add(p);
+                continue;
+            }
+            for (int q : idx.closure(p)) {
+                qset.add(q);
+            }
         }
         return qset;
     }
 
     /* Esercizio 5.1
-     * Calcola la epsilon chiusura di uno stato dell'automa facendo riferimento all'algoritmo in Tabella 3 sul pdf Esercizi.
+     * Calcola la epsilon chiusura di uno stato dell'automa. Invece del punto fisso dell'algoritmo in Tabella 3 sul pdf
+     * Esercizi si usano le chiusure di tutti gli stati, calcolate una volta sola nell'indice delle transizioni.
      * E' un caso specifico del metodo precedente.
      * @param p  Insieme di cui calcolare l'epsilon chiusura.
      * @return Insieme di stati raggiungibili da p per mezzo di zero o più epsilon transizioni.
      * @see #epsilonClosure
      */
     public HashSet<Integer> epsilonClosure(int p) {
-        boolean[] r = new boolean[numberOfStates];	  				//array di booleani associati agli stati dell'automa
-        HashSet<Integer> s = new HashSet<Integer>();  				//HashSet da riempiere e restituire al termine
-        HashSet<Character> input = alphabet();		  				//ottengo l'alfabeto dei caratteri in input per l'automa
-        for (int i = 0; i < r.length; i++) {							//inizializzo l'array degli stati:
-            if (i == p) {												//false = stato non raggiungibile per mezzo di EPSILON-transizioni a partire da q, true = altrimenti
-                r[i] = true;						  				//lo stato q è sempre raggiungibile con EPSILON-transizioni da sè stesso
-                s.add(i);											//aggiungo i ad s (ogni stato i è raggiungibile da sè stesso con una EPSILON-transizione)
-            } else {
-                r[i] = false;    					  				//assumiamo inizialmente che tutti gli altri stati non siano raggiungibili da q
-            }
-        }
-        boolean newStateFound = true;				  				//booleano di supporto: indica la presenza di nuovi stati da valutare
-        while (newStateFound) //ciclo finchè ho nuovi stati per i quali devo valutare la raggiungibilità
-        {
-            newStateFound = false;					  				//all'inizio di ogni ciclo non ho ancora trovato nuovi stati
-            for (int i = 0; i < r.length; i++) {		  				//scorro tutto l'array dei booleani associati agli stati dell'automa
-                if (r[i] == true) {					  				//se l'elemento i-esimo dell'array è true significa che lo stato i è raggiungibile per mezzo di EPSIOLN-transizioni
-                    HashSet<Integer> states = move(i, EPSILON);		//eseguo la mossa leggendo EPSILON a partire dallo stato i e metto in states l'insieme degli stati di destinazione ottenuto
-                    if (states != null && !states.isEmpty()) {							//se la mossa è valida (insieme non vuoto)...
-                        for (Integer j : states) {					//per tutti gli stati dell'insieme ottenuto...
-                            if (validState(j) && !s.contains(j)) {	//se lo stato j è valido e non l'ho già aggiunto all'hashset s
-                                newStateFound = true;				//ho trovato almeno un nuovo stato da controllare
-                                r[j] = true;						//marco j come raggiungibile
-                                s.add(j);							//aggiungo j all'HashSet degli stati raggiungibili
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return s;
+        HashSet<Integer> s = new HashSet<Integer>();  				//insieme di partenza formato dal solo stato p
+        s.add(p);
+        return epsilonClosure(s);                     				//chiusura precalcolata di p
     }
 
     /**
@@ -306,56 +378,244 @@ public class NFA {
         return automa;
     }
 
+    /**
+     * Restituisce la simulazione diretta dell'automa, che non richiede la
+     * costruzione del DFA equivalente.
+     *
+     * @return La simulazione dell'automa nel suo stato attuale.
+     */
+    public BitNFA simulator() {
+        if (simulator == null) {
+            simulator = new BitNFA(this);
+        }
+        return simulator;
+    }
+
+    /**
+     * Riconosce una stringa simulando direttamente l'automa. Il costo e`
+     * O(n&middot;m) anche per gli automi, come {@link #nth(int)}, il cui DFA
+     * equivalente ha un numero esponenziale di stati; per gli altri automi
+     * conviene {@link DFA#scan(CharSequence)} sul DFA minimo.
+     *
+     * @param s La stringa da riconoscere.
+     * @return <code>true</code> se la stringa e` accettata,
+     * <code>false</code> altrimenti.
+     */
+    public boolean scan(CharSequence s) {
+        return simulator().scan(s);
+    }
+
     /**
      * Calcola l'automa a stati finiti deterministico equivalente.
      *
      * @return DFA equivalente.
      */
     public DFA dfa() {
-        // la costruzione del DFA utilizza due tabelle hash per tenere
-        // traccia della corrispondenza (biunivoca) tra insiemi di
-        // stati del NFA e stati del DFA
-        HashMap<HashSet<Integer>, Integer> indexOfSet
-                = new HashMap<HashSet<Integer>, Integer>();    // NFA -> DFA
-        HashMap<Integer, HashSet<Integer>> setOfIndex
-                = new HashMap<Integer, HashSet<Integer>>();    // DFA -> NFA
+        return dfa(new ArrayList<int[]>());
+    }
+
+    /**
+     * Calcola un automa equivalente senza epsilon transizioni. Lo stato p ha
+     * una mossa con simbolo ch verso q se uno stato della epsilon chiusura di
+     * p ha quella mossa, ed e` finale se la sua chiusura contiene uno stato
+     * finale; gli stati non piu` raggiungibili dallo stato iniziale vengono
+     * eliminati. Gli stati rimasti sono rinumerati nell'ordine in cui li
+     * raggiunge una visita in ampiezza, quindi lo stato iniziale resta 0.
+     *
+     * @return L'automa equivalente senza epsilon transizioni.
+     */
+    public NFA removeEpsilon() {
+        final Index idx = index();
+        final int n = numberOfStates;
+        NFABuilder b = new NFABuilder();
+        if (n == 0) {
+            return b.build();
+        }
+        int[] renumber = new int[n];    // nuovo indice + 1, 0 se non raggiunto
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = 0;
+        renumber[0] = b.newState() + 1;
+        while (head < tail) {
+            final int p = queue[head++];
+            final int np = renumber[p] - 1;
+            for (int r : idx.closure(p)) {
+                if (finalState(r)) {
+                    b.addFinalState(np);
+                }
+                // mosse con simbolo di r, saltando le epsilon transizioni
+                for (int k = idx.rowStart[r]; k < idx.rowStart[r + 1]; k++) {
+                    if (idx.labels[k] == EPSILON) {
+                        continue;
+                    }
+                    for (int i = idx.targetStart[k]; i < idx.targetStart[k + 1]; i++) {
+                        final int q = idx.targets[i];
+                        if (renumber[q] == 0) {
+                            renumber[q] = b.newState() + 1;
+                            queue[tail++] = q;
+                        }
+                        b.addMove(np, idx.labels[k], renumber[q] - 1);
+                    }
+                }
+                for (int j = idx.rangeStart[r]; j < idx.rangeStart[r + 1]; j++) {
+                    final int q = idx.rangeTargets[j];
+                    if (renumber[q] == 0) {
+                        renumber[q] = b.newState() + 1;
+                        queue[tail++] = q;
+                    }
+                    b.addRange(np, idx.rangeLo[j], idx.rangeHi[j], renumber[q] - 1);
+                }
+            }
+        }
+        return b.build();
+    }
+
+    /**
+     * Calcola l'automa a stati finiti deterministico equivalente usando il
+     * pool comune di fork/join.
+     *
+     * @return DFA equivalente, isomorfo a quello calcolato da {@link #dfa()}.
+     * @see #parallelDfa(ForkJoinPool)
+     */
+    public DFA parallelDfa() {
+        return parallelDfa(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Calcola l'automa a stati finiti deterministico equivalente esplorando
+     * in parallelo gli stati del DFA scoperti a ogni livello. L'automa non
+     * deve essere modificato durante la costruzione.
+     *
+     * @param pool Il pool che esegue la costruzione.
+     * @return DFA equivalente, isomorfo a quello calcolato da {@link #dfa()}.
+     */
+    public DFA parallelDfa(ForkJoinPool pool) {
+        return ParallelSubsets.dfa(this, pool);
+    }
+
+    /**
+     * Calcola l'automa a stati finiti deterministico equivalente, restituendo
+     * anche l'insieme di stati del NFA corrispondente a ogni stato del DFA.
+     *
+     * @param sets Lista vuota che al termine contiene in posizione p
+     * l'insieme ordinato di stati del NFA corrispondente allo stato p del DFA.
+     * @return DFA equivalente.
+     */
+    DFA dfa(ArrayList<int[]> sets) {
+        // la corrispondenza (biunivoca) tra insiemi di stati del NFA e stati
+        // del DFA e` mantenuta da una tabella di insiemi ordinati: l'indice
+        // di un insieme nella tabella e` lo stato del DFA
+        final Index idx = index();
+        StateSetTable table = new StateSetTable();    // NFA <-> DFA
 
         DFA dfa = new DFA(1);                            // il DFA
         Stack<Integer> newStates = new Stack<Integer>(); // nuovi stati del DFA
-        HashSet<Character> alphabet = alphabet();
+        final char[] minterms = idx.minterms;      // simboli e intervalli
+        final int[] mark = new int[numberOfStates];     // stati gia` in buffer
+        int stamp = 0;
+        int[] buffer = new int[Math.max(1, numberOfStates)];
 
-        indexOfSet.put(epsilonClosure(0), 0); // stati dell'NFA corrisp. a q0
-        setOfIndex.put(0, epsilonClosure(0));
+        table.add(numberOfStates > 0 ? idx.closure(0) : new int[0]); // stati dell'NFA corrisp. a q0
         newStates.push(0);                    // nuovo stato da esplorare
 
         while (!newStates.empty()) { // finche' ci sono nuovi stati da visitare
             final int p = newStates.pop(); // ne considero uno e lo visito
-            final HashSet<Integer> pset = setOfIndex.get(p); // stati del NFA corrisp.
-            for (char ch : alphabet) { // considero tutte le possibili transizioni
-                HashSet<Integer> qset = epsilonClosure(move(pset, ch));
-                if (indexOfSet.containsKey(qset)) { // se qset non e` nuovo...
-                    final int q = indexOfSet.get(qset); // recupero il suo indice
-                    dfa.setMove(p, ch, q);          // aggiungo la transizione
-                } else {                            // se invece qset e` nuovo
-                    final int q = dfa.newState();   // creo lo stato nel DFA
-                    indexOfSet.put(qset, q);        // aggiorno la corrispondenza
-                    setOfIndex.put(q, qset);
+            final int[] pset = table.get(p); // stati del NFA corrisp.
+            for (int m = 0; m < minterms.length; m += 2) { // considero tutte le possibili transizioni
+                final char ch = minterms[m];   // rappresentante del minterm
+                // qset = epsilonClosure(move(pset, ch)) in buffer[0, size)
+                stamp++;
+                int size = 0;
+                for (int r : pset) {
+                    final int k = idx.find(r, ch);
+                    if (k >= 0) {
+                        for (int i = idx.targetStart[k]; i < idx.targetStart[k + 1]; i++) {
+                            for (int q : idx.closure(idx.targets[i])) {
+                                if (mark[q] != stamp) {
+                                    mark[q] = stamp;
+                                    buffer[size++] = q;
+                                }
+                            }
+                        }
+                    }
+                    for (int j = idx.rangeStart[r]; j < idx.rangeStart[r + 1]; j++) {
+                        if (!idx.inRange(j, ch)) {
+                            continue;
+                        }
+                        for (int q : idx.closure(idx.rangeTargets[j])) {
+                            if (mark[q] != stamp) {
+                                mark[q] = stamp;
+                                buffer[size++] = q;
+                            }
+                        }
+                    }
+                }
+                Arrays.sort(buffer, 0, size);
+                int q = table.find(buffer, size);
+                if (q < 0) {                        // se qset e` nuovo
+                    q = dfa.newState();             // creo lo stato nel DFA
+                    table.add(Arrays.copyOf(buffer, size)); // aggiorno la corrispondenza
                     newStates.push(q);              // q e` da visitare
+                }
+                if (minterms[m + 1] == ch) {
                     dfa.setMove(p, ch, q);          // aggiungo la transizione
+                } else {
+                    dfa.setRange(p, ch, minterms[m + 1], q);
                 }
             }
         }
 
         // stabilisco gli stati finali del DFA
         for (int p = 0; p < dfa.getNumberOfStates(); p++) {
-            if (finalState(setOfIndex.get(p))) {
-                dfa.addFinalState(p);
+            sets.add(table.get(p));
+            for (int q : table.get(p)) {
+                if (finalState(q)) {
+                    dfa.addFinalState(p);
+                    break;
+                }
             }
         }
 
         return dfa;
     }
 
+    /**
+     * Compila piu` regole e ne costruisce l'unione: il nuovo stato iniziale 0
+     * ha una epsilon transizione verso lo stato iniziale dell'automa di ogni
+     * regola, e gli stati finali sono quelli di tutti gli automi.
+     *
+     * @param rules Le regole da unire.
+     * @param ruleOf Array lungo almeno 1; al termine <code>ruleOf[0]</code>
+     * e` lungo quanto il numero di stati dell'unione e
+     * <code>ruleOf[0][q]</code> e` l'indice della regola di cui q e` uno
+     * stato finale, oppure -1 se q non e` finale.
+     * @return L'automa unione.
+     */
+    static NFA union(RegExp[] rules, int[][] ruleOf) {
+        NFA[] automata = new NFA[rules.length];
+        int n = 1;
+        for (int k = 0; k < rules.length; k++) {
+            automata[k] = rules[k].compile();
+            n += automata[k].numberOfStates();
+        }
+        NFA union = new NFA(1);
+        int[] rule = new int[n];
+        Arrays.fill(rule, -1);
+        for (int k = 0; k < automata.length; k++) {
+            final int offset = union.append(automata[k]);
+            union.addMove(0, EPSILON, offset);
+            for (int q = 0; q < automata[k].numberOfStates(); q++) {
+                if (automata[k].finalState(q)) {
+                    union.addFinalState(offset + q);
+                    rule[offset + q] = k;
+                }
+            }
+        }
+        ruleOf[0] = rule;
+        return union;
+    }
+
     /**
      * Uninone di due automi NFA
      *
@@ -364,12 +624,17 @@ public class NFA {
      */
     public int append(NFA a) {
         final int n = numberOfStates;
+        index = null;
+        simulator = null;
         numberOfStates += a.numberOfStates();
         for (Move m : a.transitions.keySet()) {
             for (int q : a.transitions.get(m)) {
                 addMove(n + m.start, m.ch, n + q);
             }
         }
+        for (int[] r : a.ranges) {
+            ranges.add(new int[]{n + r[0], r[1], r[2], n + r[3]});
+        }
         return n;
     }
 
@@ -378,7 +643,7 @@ public class NFA {
         diGraph = diGraph + "node [color=blue4, shape = circle]; \n";
         diGraph = diGraph + "rankdir=LR; \n";
         diGraph = diGraph + "secret_node [style=invis] \n";
-        if (!transitions.isEmpty()) {
+        if (!transitions.isEmpty() || !ranges.isEmpty()) {
             diGraph = diGraph + "secret_node -> 0;\n";
         }
         for (int i = 0; i < this.numberOfStates; i++) {
@@ -398,6 +663,9 @@ public class NFA {
                 }
             }
         }
+        for (int[] r : ranges) {
+            diGraph = diGraph + r[0] + " -> " + r[3] + "[label = <<font color=\"darkgreen\">[" + (char) r[1] + "-" + (char) r[2] + "]</font>>]; \n";
+        }
         for (Integer toEnd : finalStates) {
             diGraph = diGraph + toEnd + " [shape = \"doublecircle\"]; \n";
         }
@@ -420,12 +688,314 @@ public class NFA {
         return false;
     }
 
+    /**
+     * Restituisce l'indice delle transizioni, calcolandolo se l'automa e`
+     * cambiato dall'ultima volta.
+     */
+    Index index() {
+        if (index == null) {
+            index = new Index(numberOfStates, transitions, ranges);
+        }
+        return index;
+    }
+
+    /**
+     * Transizioni dell'automa in forma compressa per righe (CSR). Le mosse
+     * uscenti dallo stato p occupano le posizioni
+     * <code>[rowStart[p], rowStart[p + 1])</code> di <code>labels</code>,
+     * ordinate per simbolo (quindi le epsilon transizioni sono sempre le
+     * prime); gli stati di arrivo della mossa k sono
+     * <code>targets[targetStart[k], targetStart[k + 1])</code>, in ordine
+     * crescente. Le transizioni etichettate da intervalli uscenti da p
+     * occupano le posizioni <code>[rangeStart[p], rangeStart[p + 1])</code>
+     * di <code>rangeLo</code>, <code>rangeHi</code> e
+     * <code>rangeTargets</code>.
+     */
+    static final class Index {
+
+        final int[] rowStart;
+        final char[] labels;
+        final int[] targetStart;
+        final int[] targets;
+        /**
+         * Alfabeto dell'automa in ordine crescente, senza EPSILON.
+         */
+        final char[] alphabet;
+        final int[] rangeStart;
+        final char[] rangeLo;
+        final char[] rangeHi;
+        final int[] rangeTargets;
+        /**
+         * Intervalli elementari (minterm) dei simboli e degli intervalli
+         * dell'automa, come coppie di estremi: da ogni insieme di stati tutti
+         * i caratteri di un minterm portano nello stesso insieme. Senza
+         * intervalli ogni minterm e` un simbolo dell'alfabeto.
+         */
+        final char[] minterms;
+        /**
+         * <code>closures[p]</code> e` l'epsilon chiusura dello stato p come
+         * array ordinato; gli stati della stessa componente fortemente
+         * connessa del grafo delle epsilon transizioni condividono l'array.
+         * Calcolato al primo uso.
+         */
+        private int[][] closures;
+
+        Index(int[] rowStart, char[] labels, int[] targetStart, int[] targets, char[] alphabet,
+                int[] rangeStart, char[] rangeLo, char[] rangeHi, int[] rangeTargets) {
+            this.rowStart = rowStart;
+            this.labels = labels;
+            this.targetStart = targetStart;
+            this.targets = targets;
+            this.alphabet = alphabet;
+            this.rangeStart = rangeStart;
+            this.rangeLo = rangeLo;
+            this.rangeHi = rangeHi;
+            this.rangeTargets = rangeTargets;
+            this.minterms = minterms(alphabet, rangeLo, rangeHi);
+        }
+
+        Index(int numberOfStates, HashMap<Move, HashSet<Integer>> transitions, ArrayList<int[]> ranges) {
+            ArrayList<Move> moves = new ArrayList<Move>(transitions.keySet());
+            moves.sort(new Comparator<Move>() {
+                @Override
+                public int compare(Move a, Move b) {
+                    return a.start != b.start ? Integer.compare(a.start, b.start) : Character.compare(a.ch, b.ch);
+                }
+            });
+            rowStart = new int[numberOfStates + 1];
+            labels = new char[moves.size()];
+            targetStart = new int[moves.size() + 1];
+            int edges = 0;
+            for (HashSet<Integer> set : transitions.values()) {
+                edges += set.size();
+            }
+            targets = new int[edges];
+            TreeSet<Character> symbols = new TreeSet<Character>();
+            int t = 0;
+            for (int k = 0; k < moves.size(); k++) {
+                Move m = moves.get(k);
+                rowStart[m.start + 1]++;
+                labels[k] = m.ch;
+                if (m.ch != EPSILON) {
+                    symbols.add(m.ch);
+                }
+                targetStart[k] = t;
+                for (int q : transitions.get(m)) {
+                    targets[t++] = q;
+                }
+                Arrays.sort(targets, targetStart[k], t);
+            }
+            targetStart[moves.size()] = t;
+            for (int p = 0; p < numberOfStates; p++) {
+                rowStart[p + 1] += rowStart[p];
+            }
+            alphabet = new char[symbols.size()];
+            int i = 0;
+            for (char ch : symbols) {
+                alphabet[i++] = ch;
+            }
+            //intervalli ordinati per stato di partenza (counting sort)
+            rangeStart = new int[numberOfStates + 1];
+            for (int[] r : ranges) {
+                rangeStart[r[0] + 1]++;
+            }
+            for (int p = 0; p < numberOfStates; p++) {
+                rangeStart[p + 1] += rangeStart[p];
+            }
+            rangeLo = new char[ranges.size()];
+            rangeHi = new char[ranges.size()];
+            rangeTargets = new int[ranges.size()];
+            int[] next = Arrays.copyOf(rangeStart, numberOfStates);
+            for (int[] r : ranges) {
+                final int j = next[r[0]]++;
+                rangeLo[j] = (char) r[1];
+                rangeHi[j] = (char) r[2];
+                rangeTargets[j] = r[3];
+            }
+            minterms = minterms(alphabet, rangeLo, rangeHi);
+        }
+
+        /**
+         * Calcola i minterm dei simboli e degli intervalli.
+         */
+        private static char[] minterms(char[] alphabet, char[] rangeLo, char[] rangeHi) {
+            final int n = alphabet.length + rangeLo.length;
+            char[] lo = Arrays.copyOf(alphabet, n);
+            char[] hi = Arrays.copyOf(alphabet, n);
+            System.arraycopy(rangeLo, 0, lo, alphabet.length, rangeLo.length);
+            System.arraycopy(rangeHi, 0, hi, alphabet.length, rangeHi.length);
+            return CharClasses.minterms(lo, hi, n);
+        }
+
+        /**
+         * Determina se la transizione su intervallo j contiene ch.
+         */
+        boolean inRange(int j, char ch) {
+            return rangeLo[j] <= ch && ch <= rangeHi[j];
+        }
+
+        /**
+         * Restituisce l'epsilon chiusura di uno stato valido.
+         *
+         * @return Gli stati raggiungibili da p con zero o piu` epsilon
+         * transizioni, in ordine crescente. L'array non deve essere
+         * modificato.
+         */
+        int[] closure(int p) {
+            if (closures == null) {
+                closures = closures();
+            }
+            return closures[p];
+        }
+
+        /**
+         * Calcola le epsilon chiusure di tutti gli stati. L'algoritmo di Tarjan
+         * trova le componenti fortemente connesse del grafo delle epsilon
+         * transizioni in ordine topologico inverso, quindi quando una
+         * componente viene chiusa le chiusure delle componenti che raggiunge
+         * sono gia` pronte: la sua chiusura e` l'unione dei suoi stati e di
+         * quelle chiusure.
+         */
+        private int[][] closures() {
+            final int n = rowStart.length - 1;
+            int[][] result = new int[n][];
+            int[] order = new int[n];       //ordine di visita, 0 = non visitato
+            int[] low = new int[n];
+            int[] sccStack = new int[n];
+            boolean[] onStack = new boolean[n];
+            int[] callStack = new int[n];   //stati in visita
+            int[] edge = new int[n];        //prossima epsilon transizione da esaminare
+            int[] mark = new int[n];        //mark[q] == stamp se q e` gia` nella chiusura in costruzione
+            int stamp = 0;
+            int[] buffer = new int[n];
+            int visited = 0;
+            int sccTop = 0;
+            for (int root = 0; root < n; root++) {
+                if (order[root] != 0) {
+                    continue;
+                }
+                int top = 0;
+                callStack[top++] = root;
+                order[root] = low[root] = ++visited;
+                sccStack[sccTop++] = root;
+                onStack[root] = true;
+                edge[root] = epsilonStart(root);
+                while (top > 0) {
+                    final int v = callStack[top - 1];
+                    final int end = epsilonEnd(v);
+                    if (edge[v] < end) {
+                        final int w = targets[edge[v]++];
+                        if (order[w] == 0) {
+                            order[w] = low[w] = ++visited;
+                            sccStack[sccTop++] = w;
+                            onStack[w] = true;
+                            edge[w] = epsilonStart(w);
+                            callStack[top++] = w;
+                        } else if (onStack[w]) {
+                            low[v] = Math.min(low[v], order[w]);
+                        }
+                        continue;
+                    }
+                    top--;
+                    if (top > 0) {
+                        final int u = callStack[top - 1];
+                        low[u] = Math.min(low[u], low[v]);
+                    }
+                    if (low[v] != order[v]) {
+                        continue;
+                    }
+                    //v e` la radice di una componente: la chiudo
+                    stamp++;
+                    int size = 0;
+                    int first = sccTop;
+                    do {
+                        first--;
+                    } while (sccStack[first] != v);
+                    for (int i = first; i < sccTop; i++) {
+                        final int q = sccStack[i];
+                        if (mark[q] != stamp) {
+                            mark[q] = stamp;
+                            buffer[size++] = q;
+                        }
+                    }
+                    for (int i = first; i < sccTop; i++) {
+                        final int q = sccStack[i];
+                        for (int j = epsilonStart(q); j < epsilonEnd(q); j++) {
+                            final int[] c = result[targets[j]];
+                            if (c == null) {
+                                continue; //stato della stessa componente
+                            }
+                            for (int r : c) {
+                                if (mark[r] != stamp) {
+                                    mark[r] = stamp;
+                                    buffer[size++] = r;
+                                }
+                            }
+                        }
+                    }
+                    int[] closure = Arrays.copyOf(buffer, size);
+                    Arrays.sort(closure);
+                    for (int i = first; i < sccTop; i++) {
+                        onStack[sccStack[i]] = false;
+                        result[sccStack[i]] = closure;
+                    }
+                    sccTop = first;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Posizione in <code>targets</code> della prima epsilon transizione
+         * uscente da p.
+         */
+        private int epsilonStart(int p) {
+            final int k = rowStart[p];
+            return k < rowStart[p + 1] && labels[k] == EPSILON ? targetStart[k] : 0;
+        }
+
+        /**
+         * Posizione in <code>targets</code> successiva all'ultima epsilon
+         * transizione uscente da p.
+         */
+        private int epsilonEnd(int p) {
+            final int k = rowStart[p];
+            return k < rowStart[p + 1] && labels[k] == EPSILON ? targetStart[k + 1] : 0;
+        }
+
+        /**
+         * Restituisce la posizione della mossa dallo stato p con simbolo ch,
+         * oppure -1 se non esiste.
+         */
+        int find(int p, char ch) {
+            if (p < 0 || p + 1 >= rowStart.length) {
+                return -1;
+            }
+            int lo = rowStart[p];
+            int hi = rowStart[p + 1] - 1;
+            while (lo <= hi) {
+                final int mid = (lo + hi) >>> 1;
+                if (labels[mid] < ch) {
+                    lo = mid + 1;
+                } else if (labels[mid] > ch) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+    }
+
     @Override
     public String toString() {
         String a = "NFA{" + "numberOfStates=" + numberOfStates + ", finalStates=" + finalStates + ", transitions=[ ";
         for (Move move : transitions.keySet()) {
             a = a + move.toString() + "->" + transitions.get(move).toString() + " ";
         }
+        for (int[] r : ranges) {
+            a = a + "(" + r[0] + ",[" + (char) r[1] + "-" + (char) r[2] + "])->" + r[3] + " ";
+        }
         return a + "]}";
     }
 
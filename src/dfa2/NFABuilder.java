@@ -0,0 +1,294 @@
+package dfa2;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+
+/**
+ * Costruttore di automi {@link NFA} per grandi quantita` di transizioni. Le
+ * mosse vengono accodate in array di primitivi senza cercare duplicati, quindi
+ * ogni inserimento costa O(1); {@link #build()} ordina le mosse, elimina i
+ * duplicati e crea l'automa con l'indice delle transizioni gia` calcolato.
+ *
+ * @author SashaAlexandru
+ */
+public final class NFABuilder {
+
+    /**
+     * Numero degli stati creati finora.
+     */
+    private int numberOfStates;
+    /**
+     * Stati di partenza delle mosse inserite.
+     */
+    private int[] from = new int[16];
+    /**
+     * Simboli delle mosse inserite.
+     */
+    private char[] labels = new char[16];
+    /**
+     * Stati di arrivo delle mosse inserite.
+     */
+    private int[] to = new int[16];
+    /**
+     * Numero di mosse inserite, compresi i duplicati.
+     */
+    private int moves;
+    /**
+     * Transizioni su intervalli inserite: stato di partenza, estremi e stato
+     * di arrivo.
+     */
+    private int[] rangeFrom = new int[0];
+    private char[] rangeLo = new char[0];
+    private char[] rangeHi = new char[0];
+    private int[] rangeTo = new int[0];
+    /**
+     * Numero di transizioni su intervalli inserite.
+     */
+    private int ranges;
+    /**
+     * Stati finali.
+     */
+    private final BitSet finalStates = new BitSet();
+
+    /**
+     * Crea un costruttore senza stati.
+     */
+    public NFABuilder() {
+    }
+
+    /**
+     * Crea un costruttore con un dato numero di stati.
+     *
+     * @param n Il numero di stati iniziali.
+     */
+    public NFABuilder(int n) {
+        numberOfStates = n;
+    }
+
+    /**
+     * Aggiunge uno stato.
+     *
+     * @return L'indice del nuovo stato creato
+     */
+    public int newState() {
+        return numberOfStates++;
+    }
+
+    /**
+     * Restituisce il numero di stati creati finora.
+     *
+     * @return Numero di stati.
+     */
+    public int numberOfStates() {
+        return numberOfStates;
+    }
+
+    /**
+     * Determina se uno stato e` valido oppure no.
+     *
+     * @param p Lo stato da controllare.
+     * @return <code>true</code> se lo stato e` valido, <code>false</code>
+     * altrimenti.
+     */
+    public boolean validState(int p) {
+        return p >= 0 && p < numberOfStates;
+    }
+
+    /**
+     * Aggiunge uno stato finale.
+     *
+     * @param p Lo stato che si vuole aggiungere a quelli finali.
+     * @return <code>true</code> se lo stato e` valido, <code>false</code>
+     * altrimenti.
+     */
+    public boolean addFinalState(int p) {
+        if (validState(p)) {
+            finalStates.set(p);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Aggiunge una transizione, senza controllare se esiste gia`.
+     *
+     * @param p Lo stato di partenza della transizione.
+     * @param ch Il simbolo che etichetta la transizione, oppure
+     * {@link NFA#EPSILON}.
+     * @param q Lo stato di arrivo della transizione.
+     * @return <code>true</code> se lo stato di partenza e lo stato di arrivo
+     * sono validi, <code>false</code> altrimenti.
+     */
+    public boolean addMove(int p, char ch, int q) {
+        if (!validState(p) || !validState(q)) {
+            return false;
+        }
+        if (moves == from.length) {
+            from = Arrays.copyOf(from, moves * 2);
+            labels = Arrays.copyOf(labels, moves * 2);
+            to = Arrays.copyOf(to, moves * 2);
+        }
+        from[moves] = p;
+        labels[moves] = ch;
+        to[moves] = q;
+        moves++;
+        return true;
+    }
+
+    /**
+     * Aggiunge una transizione etichettata da tutti i caratteri di un
+     * intervallo, senza controllare se esiste gia`.
+     *
+     * @param p Lo stato di partenza della transizione.
+     * @param lo Il primo carattere dell'intervallo, diverso da
+     * {@link NFA#EPSILON}.
+     * @param hi L'ultimo carattere dell'intervallo, incluso.
+     * @param q Lo stato di arrivo della transizione.
+     * @return <code>true</code> se gli stati sono validi e l'intervallo non e`
+     * vuoto, <code>false</code> altrimenti.
+     */
+    public boolean addRange(int p, char lo, char hi, int q) {
+        if (!validState(p) || !validState(q) || lo == NFA.EPSILON || lo > hi) {
+            return false;
+        }
+        if (lo == hi) {
+            return addMove(p, lo, q);
+        }
+        if (ranges == rangeFrom.length) {
+            final int capacity = Math.max(4, ranges * 2);
+            rangeFrom = Arrays.copyOf(rangeFrom, capacity);
+            rangeLo = Arrays.copyOf(rangeLo, capacity);
+            rangeHi = Arrays.copyOf(rangeHi, capacity);
+            rangeTo = Arrays.copyOf(rangeTo, capacity);
+        }
+        rangeFrom[ranges] = p;
+        rangeLo[ranges] = lo;
+        rangeHi[ranges] = hi;
+        rangeTo[ranges] = q;
+        ranges++;
+        return true;
+    }
+
+    /**
+     * Aggiunge una copia di un automa, con gli stati rinumerati a partire dal
+     * primo stato libero. Come {@link NFA#append(NFA)}, gli stati finali
+     * dell'automa copiato non vengono aggiunti.
+     *
+     * @param a L'automa da copiare.
+     * @return L'indice nel costruttore dello stato 0 di <code>a</code>.
+     */
+    public int append(NFA a) {
+        final int n = numberOfStates;
+        numberOfStates += a.numberOfStates();
+        NFA.Index idx = a.index();
+        for (int p = 0; p < a.numberOfStates(); p++) {
+            for (int k = idx.rowStart[p]; k < idx.rowStart[p + 1]; k++) {
+                for (int i = idx.targetStart[k]; i < idx.targetStart[k + 1]; i++) {
+                    addMove(n + p, idx.labels[k], n + idx.targets[i]);
+                }
+            }
+            for (int j = idx.rangeStart[p]; j < idx.rangeStart[p + 1]; j++) {
+                addRange(n + p, idx.rangeLo[j], idx.rangeHi[j], n + idx.rangeTargets[j]);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Crea l'automa con gli stati, le mosse e gli stati finali inseriti
+     * finora. Il costruttore puo` continuare a essere usato: le modifiche
+     * successive non si riflettono sull'automa creato.
+     *
+     * @return L'automa costruito.
+     */
+    public NFA build() {
+        final int n = numberOfStates;
+        //ordinamento per stato di partenza (counting sort)
+        int[] rowCount = new int[n + 1];
+        for (int e = 0; e < moves; e++) {
+            rowCount[from[e] + 1]++;
+        }
+        for (int p = 0; p < n; p++) {
+            rowCount[p + 1] += rowCount[p];
+        }
+        //ogni mossa diventa una chiave simbolo << 32 | arrivo, ordinata per riga
+        long[] keys = new long[moves];
+        int[] next = Arrays.copyOf(rowCount, n);
+        for (int e = 0; e < moves; e++) {
+            keys[next[from[e]]++] = (long) labels[e] << 32 | to[e];
+        }
+        int[] rowStart = new int[n + 1];
+        char[] moveLabels = new char[moves];
+        int[] targetStart = new int[moves + 1];
+        int[] targets = new int[moves];
+        BitSet symbols = new BitSet();
+        int k = 0; //mosse distinte (stato, simbolo)
+        int t = 0; //transizioni distinte
+        for (int p = 0; p < n; p++) {
+            rowStart[p] = k;
+            Arrays.sort(keys, rowCount[p], rowCount[p + 1]);
+            for (int i = rowCount[p]; i < rowCount[p + 1]; i++) {
+                if (i > rowCount[p] && keys[i] == keys[i - 1]) {
+                    continue; //transizione duplicata
+                }
+                char ch = (char) (keys[i] >>> 32);
+                if (k == rowStart[p] || moveLabels[k - 1] != ch) {
+                    moveLabels[k] = ch;
+                    targetStart[k] = t;
+                    k++;
+                    if (ch != NFA.EPSILON) {
+                        symbols.set(ch);
+                    }
+                }
+                targets[t++] = (int) keys[i];
+            }
+        }
+        rowStart[n] = k;
+        targetStart[k] = t;
+        char[] alphabet = new char[symbols.cardinality()];
+        for (int ch = symbols.nextSetBit(0), i = 0; ch >= 0; ch = symbols.nextSetBit(ch + 1)) {
+            alphabet[i++] = (char) ch;
+        }
+        //intervalli ordinati per stato di partenza
+        int[] rangeStart = new int[n + 1];
+        for (int e = 0; e < ranges; e++) {
+            rangeStart[rangeFrom[e] + 1]++;
+        }
+        for (int p = 0; p < n; p++) {
+            rangeStart[p + 1] += rangeStart[p];
+        }
+        char[] lo = new char[ranges];
+        char[] hi = new char[ranges];
+        int[] rangeTargets = new int[ranges];
+        next = Arrays.copyOf(rangeStart, n);
+        for (int e = 0; e < ranges; e++) {
+            final int j = next[rangeFrom[e]]++;
+            lo[j] = rangeLo[e];
+            hi[j] = rangeHi[e];
+            rangeTargets[j] = rangeTo[e];
+        }
+        NFA.Index index = new NFA.Index(rowStart, Arrays.copyOf(moveLabels, k),
+                Arrays.copyOf(targetStart, k + 1), Arrays.copyOf(targets, t), alphabet,
+                rangeStart, lo, hi, rangeTargets);
+        HashSet<Integer> finals = new HashSet<Integer>();
+        for (int p = finalStates.nextSetBit(0); p >= 0; p = finalStates.nextSetBit(p + 1)) {
+            finals.add(p);
+        }
+        return new NFA(n, index, finals);
+    }
+
+    /**
+     * Compila un'espressione regolare con la costruzione di Thompson, facendo
+     * emettere a tutti i nodi le proprie transizioni nello stesso costruttore
+     * invece di copiare gli automi dei sottoalberi a ogni livello.
+     *
+     * @param e L'espressione da compilare.
+     * @return L'automa con stato iniziale 0 che riconosce <code>e</code>.
+     */
+    static NFA compile(RegExp e) {
+        NFABuilder b = new NFABuilder();
+        b.addFinalState(e.compile(b) + 1);
+        return b.build();
+    }
+}
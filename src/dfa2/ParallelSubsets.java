@@ -0,0 +1,228 @@
+package dfa2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Costruzione dei sottoinsiemi eseguita in parallelo, per livelli. Gli stati
+ * del DFA scoperti al livello precedente (la frontiera) vengono divisi fra i
+ * thread di un pool di fork/join, che calcolano gli insiemi successori con
+ * ogni simbolo (o minterm) e li rendono canonici in una tabella
+ * concorrente, cosi` che due thread che trovano lo stesso insieme ottengano
+ * lo stesso oggetto. Al termine del livello un solo thread numera gli insiemi
+ * nuovi nell'ordine (stato, simbolo): la numerazione non dipende quindi dallo
+ * scheduling e il DFA ottenuto e` isomorfo a quello di {@link NFA#dfa()}, di
+ * cui ha gli stessi stati raggiungibili, pozzo compreso.
+ *
+ * La visita e` sincronizzata per livelli invece di lasciare che ogni compito
+ * crei subito i compiti per gli stati che scopre (frontiera a work stealing):
+ * fra un livello e il successivo c'e` una barriera, e i thread restano
+ * inattivi mentre si completa il compito piu` lento del livello. In cambio
+ * la numerazione e` deterministica senza un secondo passo di rinumerazione.
+ *
+ * @author SashaAlexandru
+ */
+final class ParallelSubsets {
+
+    /**
+     * Numero di stati della frontiera sotto il quale un compito non viene
+     * diviso.
+     */
+    private static final int LEAF = 32;
+
+    private final NFA.Index index;
+    /**
+     * Minterm dell'automa, come coppie di estremi.
+     */
+    private final char[] minterms;
+    /**
+     * Insiemi gia` trovati, ciascuno associato a se stesso.
+     */
+    private final ConcurrentHashMap<StateSet, StateSet> known = new ConcurrentHashMap<StateSet, StateSet>();
+
+    private ParallelSubsets(NFA nfa) {
+        index = nfa.index();
+        minterms = index.minterms;
+    }
+
+    /**
+     * Calcola il DFA equivalente a un NFA usando i thread di un pool.
+     *
+     * @param nfa L'automa da rendere deterministico, che non deve cambiare
+     * durante la costruzione
+     * @param pool Il pool che esegue la costruzione
+     * @return DFA equivalente
+     */
+    static DFA dfa(NFA nfa, ForkJoinPool pool) {
+        return new ParallelSubsets(nfa).run(nfa, pool);
+    }
+
+    private DFA run(NFA nfa, ForkJoinPool pool) {
+        final int width = minterms.length / 2;
+        //index.closure calcola le chiusure al primo uso: qui, prima di
+        //passare l'indice ai thread del pool
+        StateSet initial = new StateSet(nfa.numberOfStates() > 0 ? index.closure(0) : new int[0]);
+        initial.id = 0;
+        known.put(initial, initial);
+        ArrayList<StateSet> states = new ArrayList<StateSet>();
+        states.add(initial);
+        int[] table = new int[16 * Math.max(1, width)];
+
+        int start = 0;
+        while (start < states.size()) {
+            final int end = states.size();
+            final StateSet[] frontier = states.subList(start, end).toArray(new StateSet[end - start]);
+            final StateSet[][] successors = new StateSet[frontier.length][];
+            pool.invoke(new Expand(frontier, successors, 0, frontier.length));
+            //numerazione sequenziale degli insiemi nuovi
+            for (int i = 0; i < frontier.length; i++) {
+                final int p = start + i;
+                if ((p + 1) * width > table.length) {
+                    table = Arrays.copyOf(table, Math.max(table.length * 2, (p + 1) * width));
+                }
+                for (int s = 0; s < width; s++) {
+                    StateSet q = successors[i][s];
+                    if (q.id < 0) {
+                        q.id = states.size();
+                        states.add(q);
+                    }
+                    table[p * width + s] = q.id;
+                }
+            }
+            start = end;
+        }
+
+        DFA dfa = new DFA(states.size());
+        for (int p = 0; p < states.size(); p++) {
+            for (int s = 0; s < width; s++) {
+                final char lo = minterms[2 * s];
+                final char hi = minterms[2 * s + 1];
+                if (lo == hi) {
+                    dfa.setMove(p, lo, table[p * width + s]);
+                } else {
+                    dfa.setRange(p, lo, hi, table[p * width + s]);
+                }
+            }
+            for (int q : states.get(p).states) {
+                if (nfa.finalState(q)) {
+                    dfa.addFinalState(p);
+                    break;
+                }
+            }
+        }
+        return dfa;
+    }
+
+    /**
+     * Calcola l'insieme successore con ogni minterm per gli stati
+     * <code>frontier[from, to)</code>.
+     */
+    private final class Expand extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final StateSet[] frontier;
+        private final StateSet[][] successors;
+        private final int from;
+        private final int to;
+
+        Expand(StateSet[] frontier, StateSet[][] successors, int from, int to) {
+            this.frontier = frontier;
+            this.successors = successors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF) {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new Expand(frontier, successors, from, mid), new Expand(frontier, successors, mid, to));
+                return;
+            }
+            int[] buffer = new int[16];
+            for (int i = from; i < to; i++) {
+                StateSet[] row = new StateSet[minterms.length / 2];
+                for (int s = 0; s < row.length; s++) {
+                    final char ch = minterms[2 * s];
+                    int size = 0;
+                    for (int r : frontier[i].states) {
+                        final int k = index.find(r, ch);
+                        if (k >= 0) {
+                            for (int j = index.targetStart[k]; j < index.targetStart[k + 1]; j++) {
+                                final int[] closure = index.closure(index.targets[j]);
+                                buffer = append(buffer, size, closure);
+                                size += closure.length;
+                            }
+                        }
+                        for (int j = index.rangeStart[r]; j < index.rangeStart[r + 1]; j++) {
+                            if (index.inRange(j, ch)) {
+                                final int[] closure = index.closure(index.rangeTargets[j]);
+                                buffer = append(buffer, size, closure);
+                                size += closure.length;
+                            }
+                        }
+                    }
+                    //ordina e toglie i duplicati
+                    Arrays.sort(buffer, 0, size);
+                    int unique = 0;
+                    for (int j = 0; j < size; j++) {
+                        if (unique == 0 || buffer[j] != buffer[unique - 1]) {
+                            buffer[unique++] = buffer[j];
+                        }
+                    }
+                    StateSet q = new StateSet(Arrays.copyOf(buffer, unique));
+                    StateSet old = known.putIfAbsent(q, q);
+                    row[s] = old != null ? old : q;
+                }
+                successors[i] = row;
+            }
+        }
+    }
+
+    /**
+     * Copia una chiusura in fondo ai primi size elementi di buffer, che viene
+     * ingrandito se serve.
+     */
+    private static int[] append(int[] buffer, int size, int[] closure) {
+        if (size + closure.length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + closure.length));
+        }
+        System.arraycopy(closure, 0, buffer, size, closure.length);
+        return buffer;
+    }
+
+    /**
+     * Un insieme ordinato di stati del NFA con la sua impronta. L'indice nel
+     * DFA viene assegnato solo dal thread che numera gli stati, fra un
+     * livello e il successivo.
+     */
+    private static final class StateSet {
+
+        final int[] states;
+        final long fingerprint;
+        int id = -1;
+
+        StateSet(int[] states) {
+            this.states = states;
+            this.fingerprint = StateSetTable.fingerprint(states, states.length);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (fingerprint ^ fingerprint >>> 32);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof StateSet)) {
+                return false;
+            }
+            StateSet other = (StateSet) obj;
+            return fingerprint == other.fingerprint && Arrays.equals(states, other.states);
+        }
+    }
+}
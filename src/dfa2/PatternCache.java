@@ -0,0 +1,270 @@
+package dfa2;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache dei riconoscitori compilati, con chiave la struttura dell'albero
+ * dell'espressione regolare: l'impronta e` l'hash che ogni nodo della
+ * libreria calcola alla costruzione, e il confronto visita i due alberi con
+ * una pila invece che con <code>equals</code>, che e` ricorsivo. Due regole
+ * scritte separatamente ma uguali trovano quindi lo stesso automa, a
+ * qualsiasi profondita`, e la seconda compilazione diventa una ricerca in una
+ * tabella.
+ *
+ * Gli automi in cache sono al piu` <code>maxEntries</code> e la loro memoria
+ * stimata al piu` <code>maxBytes</code>: quando uno dei due limiti viene
+ * superato si eliminano gli automi usati meno di recente (LRU). Un automa piu`
+ * grande di <code>maxBytes</code> viene restituito ma non ricordato.
+ *
+ * Un oggetto di questa classe e` thread-safe. La compilazione avviene fuori
+ * dal lock, quindi due thread che chiedono insieme la stessa espressione
+ * possono compilarla entrambi, ma ottengono lo stesso automa.
+ *
+ * @author SashaAlexandru
+ */
+public final class PatternCache {
+
+    /**
+     * Numero massimo predefinito di automi in cache.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+    /**
+     * Memoria massima predefinita degli automi in cache, in byte.
+     */
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    /**
+     * Automi in cache in ordine di accesso, dal meno recente.
+     */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    /**
+     * Memoria stimata degli automi in cache.
+     */
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Crea una cache con i limiti predefiniti.
+     */
+    public PatternCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Crea una cache con limiti dati.
+     *
+     * @param maxEntries Il numero massimo di automi in cache, almeno 1
+     * @param maxBytes La memoria massima stimata degli automi in cache, in
+     * byte, almeno 1
+     */
+    public PatternCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries=" + maxEntries);
+        }
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes=" + maxBytes);
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Restituisce il riconoscitore compilato di un'espressione, compilandolo
+     * se non e` in cache. L'espressione non deve cambiare dopo essere stata
+     * inserita.
+     *
+     * @param e L'espressione
+     * @return Il DFA compilato che riconosce l'espressione
+     */
+    public CompiledDFA get(RegExp e) {
+        final Key key = new Key(e);
+        synchronized (this) {
+            Entry known = entries.get(key);
+            if (known != null) {
+                hits++;
+                return known.dfa;
+            }
+            misses++;
+        }
+        CompiledDFA dfa = compile(e);
+        final long size = dfa.memorySize();
+        synchronized (this) {
+            Entry known = entries.get(key);
+            if (known != null) {
+                return known.dfa; //compilata nel frattempo da un altro thread
+            }
+            if (size > maxBytes) {
+                return dfa;
+            }
+            entries.put(key, new Entry(dfa, size));
+            bytes += size;
+            evict();
+        }
+        return dfa;
+    }
+
+    /**
+     * Compila un'espressione nel suo riconoscitore tabellare minimo.
+     */
+    private static CompiledDFA compile(RegExp e) {
+        return e.derivativeDfa().minimizeHopcroft().compile();
+    }
+
+    /**
+     * Elimina gli automi meno recenti finche' la cache rispetta i limiti.
+     */
+    private void evict() {
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && it.hasNext()) {
+            bytes -= it.next().getValue().bytes;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Restituisce il numero di automi in cache.
+     *
+     * @return Numero di automi
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Restituisce la memoria stimata degli automi in cache.
+     *
+     * @return Memoria in byte
+     */
+    public synchronized long memorySize() {
+        return bytes;
+    }
+
+    /**
+     * Restituisce il numero di richieste trovate in cache.
+     *
+     * @return Numero di successi
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Restituisce il numero di richieste che hanno richiesto una
+     * compilazione.
+     *
+     * @return Numero di fallimenti
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Restituisce il numero di automi eliminati per rispettare i limiti.
+     *
+     * @return Numero di eliminazioni
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Svuota la cache. I contatori non vengono azzerati.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PatternCache{" + "size=" + entries.size() + ", bytes=" + bytes + ", hits=" + hits
+                + ", misses=" + misses + ", evictions=" + evictions + '}';
+    }
+
+    /**
+     * Chiave della cache: un'espressione confrontata per struttura senza
+     * ricorsione.
+     */
+    private static final class Key {
+
+        final RegExp e;
+
+        Key(RegExp e) {
+            this.e = e;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && same(e, ((Key) obj).e);
+        }
+
+        @Override
+        public int hashCode() {
+            return e.hashCode();
+        }
+
+        /**
+         * Confronta due alberi nodo per nodo con una pila di coppie. Gli hash
+         * dei nodi della libreria sono calcolati alla costruzione e scartano
+         * subito quasi tutte le coppie diverse; i sottoalberi condivisi e le
+         * coppie gia` confrontate non vengono rivisitati.
+         */
+        static boolean same(RegExp a, RegExp b) {
+            ArrayDeque<RegExp> stack = new ArrayDeque<RegExp>();
+            IdentityHashMap<RegExp, RegExp> seen = new IdentityHashMap<RegExp, RegExp>();
+            stack.push(b);
+            stack.push(a);
+            while (!stack.isEmpty()) {
+                final RegExp x = stack.pop();
+                final RegExp y = stack.pop();
+                if (x == y || seen.get(x) == y) {
+                    continue;
+                }
+                if (x.getClass() != y.getClass() || x.hashCode() != y.hashCode()) {
+                    return false;
+                }
+                seen.put(x, y);
+                if (x instanceof RegExpSequence) {
+                    stack.push(((RegExpSequence) y).right());
+                    stack.push(((RegExpSequence) x).right());
+                    stack.push(((RegExpSequence) y).left());
+                    stack.push(((RegExpSequence) x).left());
+                } else if (x instanceof RegExpChoice) {
+                    stack.push(((RegExpChoice) y).right());
+                    stack.push(((RegExpChoice) x).right());
+                    stack.push(((RegExpChoice) y).left());
+                    stack.push(((RegExpChoice) x).left());
+                } else if (x instanceof RegExpStar) {
+                    stack.push(((RegExpStar) y).operand());
+                    stack.push(((RegExpStar) x).operand());
+                } else if (!x.equals(y)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Un automa in cache con la sua memoria stimata.
+     */
+    private static final class Entry {
+
+        final CompiledDFA dfa;
+        final long bytes;
+
+        Entry(CompiledDFA dfa, long bytes) {
+            this.dfa = dfa;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package dfa2;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Analisi delle posizioni di un'espressione regolare (costruzione di
+ * Glushkov). Ogni foglia {@link RegExpSymbol} o {@link RegExpRange} e` una
+ * posizione, numerata da sinistra a destra a partire da 0; per l'espressione si calcolano
+ * l'insieme <code>first</code> delle posizioni con cui puo` iniziare una
+ * stringa, l'insieme <code>last</code> di quelle con cui puo` finire, se la
+ * stringa vuota appartiene al linguaggio e, per ogni posizione i, l'insieme
+ * <code>follow(i)</code> delle posizioni che possono seguirla.
+ *
+ * @author SashaAlexandru
+ */
+final class Positions {
+
+    /**
+     * La posizione i legge i caratteri da <code>lo[i]</code> a
+     * <code>hi[i]</code> compresi; per un simbolo i due estremi coincidono.
+     */
+    private char[] lo = new char[16];
+    private char[] hi = new char[16];
+    /**
+     * <code>follow[i]</code> e` l'insieme delle posizioni che possono seguire
+     * la posizione i.
+     */
+    private BitSet[] follow = new BitSet[16];
+    /**
+     * Numero di posizioni.
+     */
+    private int size;
+    private BitSet first;
+    private BitSet last;
+    private boolean nullable;
+
+    private Positions() {
+    }
+
+    /**
+     * Analizza un'espressione regolare.
+     *
+     * @param e L'espressione da analizzare
+     * @return Le posizioni dell'espressione, oppure null se l'espressione
+     * contiene nodi che non fanno parte della libreria
+     */
+    static Positions of(RegExp e) {
+        Positions p = new Positions();
+        Fragment f = p.analyze(e);
+        if (f == null) {
+            return null;
+        }
+        p.first = f.first;
+        p.last = f.last;
+        p.nullable = f.nullable;
+        return p;
+    }
+
+    /**
+     * Restituisce il numero di posizioni.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Restituisce il primo carattere letto dalla posizione i.
+     */
+    char lo(int i) {
+        return lo[i];
+    }
+
+    /**
+     * Restituisce l'ultimo carattere letto dalla posizione i.
+     */
+    char hi(int i) {
+        return hi[i];
+    }
+
+    /**
+     * Restituisce le posizioni che possono seguire la posizione i.
+     */
+    BitSet follow(int i) {
+        return follow[i];
+    }
+
+    /**
+     * Restituisce le posizioni con cui puo` iniziare una stringa.
+     */
+    BitSet first() {
+        return first;
+    }
+
+    /**
+     * Restituisce le posizioni con cui puo` finire una stringa.
+     */
+    BitSet last() {
+        return last;
+    }
+
+    /**
+     * Determina se la stringa vuota appartiene al linguaggio.
+     */
+    boolean nullable() {
+        return nullable;
+    }
+
+    /**
+     * Costruisce l'automa delle posizioni (di Glushkov): lo stato 0 e` quello
+     * iniziale e la posizione i diventa lo stato i + 1. Da ogni stato si va
+     * nella posizione j leggendo un carattere di j, se j appartiene a
+     * <code>first</code> (dallo stato 0) o al follow della posizione; sono
+     * finali gli stati delle posizioni in <code>last</code> e lo stato 0 se
+     * la stringa vuota appartiene al linguaggio. L'automa non ha epsilon
+     * transizioni.
+     *
+     * @return L'automa delle posizioni, con <code>size() + 1</code> stati
+     */
+    NFA automaton() {
+        NFABuilder b = new NFABuilder(size + 1);
+        for (int j = first.nextSetBit(0); j >= 0; j = first.nextSetBit(j + 1)) {
+            b.addRange(0, lo[j], hi[j], j + 1);
+        }
+        for (int i = 0; i < size; i++) {
+            for (int j = follow[i].nextSetBit(0); j >= 0; j = follow[i].nextSetBit(j + 1)) {
+                b.addRange(i + 1, lo[j], hi[j], j + 1);
+            }
+        }
+        for (int i = last.nextSetBit(0); i >= 0; i = last.nextSetBit(i + 1)) {
+            b.addFinalState(i + 1);
+        }
+        if (nullable) {
+            b.addFinalState(0);
+        }
+        return b.build();
+    }
+
+    private Fragment analyze(RegExp e) {
+        if (e instanceof RegExpSymbol) {
+            final char ch = ((RegExpSymbol) e).symbol();
+            return position(ch, ch);
+        }
+        if (e instanceof RegExpRange) {
+            return position(((RegExpRange) e).lo(), ((RegExpRange) e).hi());
+        }
+        if (e instanceof RegExpEpsilon) {
+            return new Fragment(true, new BitSet(), new BitSet());
+        }
+        if (e instanceof RegExpEmpty) {
+            return new Fragment(false, new BitSet(), new BitSet());
+        }
+        if (e instanceof RegExpSequence) {
+            RegExpSequence s = (RegExpSequence) e;
+            Fragment f1 = analyze(s.left());
+            Fragment f2 = f1 == null ? null : analyze(s.right());
+            if (f2 == null) {
+                return null;
+            }
+            for (int i = f1.last.nextSetBit(0); i >= 0; i = f1.last.nextSetBit(i + 1)) {
+                follow[i].or(f2.first);
+            }
+            if (f1.nullable) {
+                f1.first.or(f2.first);
+            }
+            if (f2.nullable) {
+                f2.last.or(f1.last);
+            }
+            return new Fragment(f1.nullable && f2.nullable, f1.first, f2.last);
+        }
+        if (e instanceof RegExpChoice) {
+            RegExpChoice c = (RegExpChoice) e;
+            Fragment f1 = analyze(c.left());
+            Fragment f2 = f1 == null ? null : analyze(c.right());
+            if (f2 == null) {
+                return null;
+            }
+            f1.first.or(f2.first);
+            f1.last.or(f2.last);
+            return new Fragment(f1.nullable || f2.nullable, f1.first, f1.last);
+        }
+        if (e instanceof RegExpStar) {
+            Fragment f = analyze(((RegExpStar) e).operand());
+            if (f == null) {
+                return null;
+            }
+            for (int i = f.last.nextSetBit(0); i >= 0; i = f.last.nextSetBit(i + 1)) {
+                follow[i].or(f.first);
+            }
+            return new Fragment(true, f.first, f.last);
+        }
+        return null;
+    }
+
+    /**
+     * Aggiunge una posizione che legge i caratteri da l a h.
+     */
+    private Fragment position(char l, char h) {
+        if (size == lo.length) {
+            lo = Arrays.copyOf(lo, size * 2);
+            hi = Arrays.copyOf(hi, size * 2);
+            follow = Arrays.copyOf(follow, size * 2);
+        }
+        final int i = size++;
+        lo[i] = l;
+        hi[i] = h;
+        follow[i] = new BitSet();
+        BitSet first = new BitSet();
+        first.set(i);
+        return new Fragment(false, first, (BitSet) first.clone());
+    }
+
+    /**
+     * Risultato dell'analisi di un sottoalbero.
+     */
+    private static final class Fragment {
+
+        final boolean nullable;
+        final BitSet first;
+        final BitSet last;
+
+        Fragment(boolean nullable, BitSet first, BitSet last) {
+            this.nullable = nullable;
+            this.first = first;
+            this.last = last;
+        }
+    }
+}
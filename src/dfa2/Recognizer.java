@@ -0,0 +1,32 @@
+package dfa2;
+
+/**
+ * Un motore che decide se una stringa appartiene al linguaggio di un automa o
+ * di un'espressione regolare. Le implementazioni differiscono per costo di
+ * costruzione, memoria e velocita` di scansione; {@link RegExp#recognizer()}
+ * sceglie quella adatta a un'espressione.
+ *
+ * @author SashaAlexandru
+ */
+public interface Recognizer {
+
+    /**
+     * Verifica se una sequenza di caratteri e` riconosciuta.
+     *
+     * @param s La sequenza da riconoscere
+     * @return true se s e` accettata, false altrimenti
+     */
+    boolean scan(CharSequence s);
+
+    /**
+     * Verifica se la porzione <code>a[offset, offset + length)</code> di un
+     * array di caratteri e` riconosciuta.
+     *
+     * @param a L'array che contiene l'input
+     * @param offset L'indice del primo carattere da leggere
+     * @param length Il numero di caratteri da leggere
+     * @return true se la porzione e` accettata, false altrimenti
+     * @throws IndexOutOfBoundsException se la porzione non e` contenuta in a
+     */
+    boolean scan(char[] a, int offset, int length);
+}
@@ -7,4 +7,64 @@ package dfa2;
  */
 public interface RegExp {
     NFA compile();
+
+    /**
+     * Aggiunge a un costruttore l'automa di Thompson dell'espressione: due
+     * nuovi stati s (iniziale) e s + 1 (finale) con le transizioni dei
+     * sottoalberi in mezzo. Le implementazioni della libreria emettono le
+     * proprie transizioni direttamente, cosi` che la compilazione di un albero
+     * costi un tempo lineare nella sua dimensione; quella predefinita copia
+     * l'automa restituito da {@link #compile()}.
+     *
+     * @param b Il costruttore in cui aggiungere l'automa.
+     * @return Lo stato iniziale s; lo stato finale e` s + 1.
+     */
+    default int compile(NFABuilder b) {
+        return b.append(compile());
+    }
+
+    /**
+     * Compila l'espressione nell'automa delle posizioni (costruzione di
+     * Glushkov): uno stato per ogni simbolo dell'espressione piu` lo stato
+     * iniziale, e nessuna epsilon transizione. Rispetto all'automa di
+     * Thompson di {@link #compile()} gli stati sono molti meno, quindi sono
+     * piu` veloci sia {@link NFA#dfa()} sia la simulazione diretta. Le
+     * espressioni che contengono nodi esterni alla libreria vengono compilate
+     * con {@link #compile()} e poi private delle epsilon transizioni.
+     *
+     * @return L'automa senza epsilon transizioni, con stato iniziale 0, che
+     * riconosce l'espressione.
+     */
+    default NFA glushkov() {
+        Positions p = Positions.of(this);
+        return p != null ? p.automaton() : compile().removeEpsilon();
+    }
+
+    /**
+     * Calcola il DFA dell'espressione con le derivate di Brzozowski, senza
+     * passare per l'automa di Thompson e la costruzione dei sottoinsiemi. Gli
+     * stati sono le derivate distinte dell'espressione, quindi il DFA e`
+     * spesso gia` vicino a quello minimo. Le espressioni che contengono nodi
+     * esterni alla libreria vengono compilate con {@link #compile()}.
+     *
+     * @return Il DFA che riconosce l'espressione, completo rispetto ai suoi
+     * simboli.
+     */
+    default DFA derivativeDfa() {
+        DFA dfa = Derivatives.dfa(this);
+        return dfa != null ? dfa : compile().dfa();
+    }
+
+    /**
+     * Sceglie il riconoscitore piu` adatto all'espressione: il riconoscitore
+     * bit-parallelo {@link ShiftAnd} se l'espressione ha al piu`
+     * {@link ShiftAnd#MAX_POSITIONS} simboli, altrimenti il DFA ottenuto da
+     * {@link #compile()}.
+     *
+     * @return Un riconoscitore del linguaggio dell'espressione.
+     */
+    default Recognizer recognizer() {
+        Recognizer r = ShiftAnd.of(this);
+        return r != null ? r : compile().dfa().compile();
+    }
 }
@@ -15,8 +15,28 @@ public class RegExpEmpty implements RegExp{
 	* @return NFA generato
 	*/
     public NFA compile(){
-		NFA a = new NFA(2);
-		a.addFinalState(1);
-		return a;
+		return NFABuilder.compile(this);
+    }
+
+   /* aggiunge al costruttore i due stati, senza archi fra loro
+	* @return lo stato iniziale
+	*/
+    public int compile(NFABuilder b){
+		final int s = b.newState();
+		b.newState();
+		return s;
+    }
+
+   /* tutte le espressioni che descrivono l'insieme vuoto sono uguali
+	* @return true se obj e` un RegExpEmpty
+	*/
+    @Override
+    public boolean equals(Object obj){
+		return obj instanceof RegExpEmpty;
+    }
+
+    @Override
+    public int hashCode(){
+		return 0x0E;
     }
 }
\ No newline at end of file
@@ -15,9 +15,29 @@ public class RegExpEpsilon implements RegExp{
 	* @return NFA generato
 	*/
     public NFA compile(){
-		NFA a = new NFA(2);
-		a.addMove(0, ch, 1);
-		a.addFinalState(1);
-		return a;
+		return NFABuilder.compile(this);
+    }
+
+   /* aggiunge al costruttore i due stati e l'arco EPSILON fra loro
+	* @return lo stato iniziale
+	*/
+    public int compile(NFABuilder b){
+		final int s = b.newState();
+		b.newState();
+		b.addMove(s, ch, s + 1);
+		return s;
+    }
+
+   /* tutte le foglie EPSILON sono uguali
+	* @return true se obj e` un RegExpEpsilon
+	*/
+    @Override
+    public boolean equals(Object obj){
+		return obj instanceof RegExpEpsilon;
+    }
+
+    @Override
+    public int hashCode(){
+		return 0xE5;
     }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package dfa2;
+
+/**
+ * Classe che rapresenta una foglia contenente un intervallo di caratteri, ad
+ * esempio [a-z]: riconosce un solo carattere fra lo e hi, estremi compresi.
+ * L'automa compilato ha una sola transizione etichettata dall'intervallo
+ * invece di una mossa per ogni carattere. Se lo &gt; hi l'intervallo e` vuoto;
+ * {@link NFA#EPSILON} non fa mai parte dell'intervallo.
+ * @author SashaAlexandru
+ */
+public class RegExpRange implements RegExp {
+    private final char lo;
+    private final char hi;
+
+    public RegExpRange(char lo, char hi) {
+        this.lo = lo == NFA.EPSILON ? (char) (NFA.EPSILON + 1) : lo;
+        this.hi = hi;
+    }
+
+    @Override
+    public NFA compile() {
+        return NFABuilder.compile(this);
+    }
+
+    @Override
+    public int compile(NFABuilder b) {
+        final int s = b.newState();
+        b.newState();
+        b.addRange(s, lo, hi, s + 1);
+        return s;
+    }
+
+    /**
+     * Restituisce il primo carattere dell'intervallo.
+     */
+    char lo() {
+        return lo;
+    }
+
+    /**
+     * Restituisce l'ultimo carattere dell'intervallo.
+     */
+    char hi() {
+        return hi;
+    }
+
+    /**
+     * Due foglie sono uguali se hanno gli stessi estremi.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof RegExpRange && lo == ((RegExpRange) obj).lo && hi == ((RegExpRange) obj).hi;
+    }
+
+    @Override
+    public int hashCode() {
+        return lo << 16 | hi;
+    }
+}
@@ -10,24 +10,65 @@ package dfa2;
  * @author SashaAlexandru
  */
 public class RegExpSequence implements RegExp {
-    private RegExp e1;
-    private RegExp e2;
+    private final RegExp e1;
+    private final RegExp e2;
+    private final int hash;
 
     public RegExpSequence(RegExp e1, RegExp e2) {
         this.e1 = e1;
         this.e2 = e2;
+        this.hash = 31 * e1.hashCode() + e2.hashCode();
     }
 
     @Override
     public NFA compile() {
-        NFA a = new NFA(2);
-        final int n =  a.append(e1.compile());
-        final int m =  a.append(e2.compile());
-        a.addMove(0, NFA.EPSILON, n);
-        a.addMove(n+1, NFA.EPSILON, m);
-        a.addMove(m+1, NFA.EPSILON, 1);
-        a.addFinalState(1);
-        return a;
+        return NFABuilder.compile(this);
     }
-    
+
+    @Override
+    public int compile(NFABuilder b) {
+        final int s = b.newState();
+        b.newState();
+        final int n = e1.compile(b);
+        final int m = e2.compile(b);
+        b.addMove(s, NFA.EPSILON, n);
+        b.addMove(n+1, NFA.EPSILON, m);
+        b.addMove(m+1, NFA.EPSILON, s + 1);
+        return s;
+    }
+
+    /**
+     * Restituisce il primo operando.
+     */
+    RegExp left() {
+        return e1;
+    }
+
+    /**
+     * Restituisce il secondo operando.
+     */
+    RegExp right() {
+        return e2;
+    }
+
+    /**
+     * Due sequenze sono uguali se hanno operandi uguali, nello stesso ordine.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof RegExpSequence)) {
+            return false;
+        }
+        RegExpSequence other = (RegExpSequence) obj;
+        return hash == other.hash && e1.equals(other.e1) && e2.equals(other.e2);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
 }
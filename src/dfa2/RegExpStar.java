@@ -5,11 +5,13 @@ package dfa2;
 
 public class RegExpStar implements RegExp {
 
-    private RegExp e1;
+    private final RegExp e1;
+    private final int hash;
 
     //costruttore
     public RegExpStar(RegExp e1) {
         this.e1 = e1;
+        this.hash = 17 * e1.hashCode() + 3;
     }
 
     /*
@@ -17,13 +19,39 @@ public class RegExpStar implements RegExp {
      * @return NFA generato
      */
     public NFA compile() {
-        NFA a = new NFA(2);
-        final int n = a.append(e1.compile());
-        a.addMove(0, NFA.EPSILON, 1);
-        a.addMove(0, NFA.EPSILON, n);
-        a.addMove(n + 1, NFA.EPSILON, n);
-        a.addMove(n + 1, NFA.EPSILON, 1);
-        a.addFinalState(1);
-        return a;
+        return NFABuilder.compile(this);
+    }
+
+    @Override
+    public int compile(NFABuilder b) {
+        final int s = b.newState();
+        b.newState();
+        final int n = e1.compile(b);
+        b.addMove(s, NFA.EPSILON, s + 1);
+        b.addMove(s, NFA.EPSILON, n);
+        b.addMove(n + 1, NFA.EPSILON, n);
+        b.addMove(n + 1, NFA.EPSILON, s + 1);
+        return s;
+    }
+
+    /**
+     * Restituisce l'espressione a cui si applica la chiusura.
+     */
+    RegExp operand() {
+        return e1;
+    }
+
+    /**
+     * Due chiusure sono uguali se si applicano a espressioni uguali.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj || obj instanceof RegExpStar && hash == ((RegExpStar) obj).hash
+                && e1.equals(((RegExpStar) obj).e1);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
     }
 }
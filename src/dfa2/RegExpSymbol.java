@@ -10,7 +10,7 @@ package dfa2;
  * @author SashaAlexandru
  */
 public class RegExpSymbol implements RegExp {
-    private char ch;
+    private final char ch;
 
     public RegExpSymbol(char ch) {
         this.ch = ch;
@@ -18,10 +18,34 @@ public class RegExpSymbol implements RegExp {
 
     @Override
     public NFA compile() {
-        NFA a = new NFA(2);
-        a.addMove(0, ch, 1);
-        a.addFinalState(1);
-        return a;
-    } 
-    
+        return NFABuilder.compile(this);
+    }
+
+    @Override
+    public int compile(NFABuilder b) {
+        final int s = b.newState();
+        b.newState();
+        b.addMove(s, ch, s + 1);
+        return s;
+    }
+
+    /**
+     * Restituisce il simbolo della foglia.
+     */
+    char symbol() {
+        return ch;
+    }
+
+    /**
+     * Due foglie sono uguali se contengono lo stesso simbolo.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof RegExpSymbol && ch == ((RegExpSymbol) obj).ch;
+    }
+
+    @Override
+    public int hashCode() {
+        return ch;
+    }
 }
@@ -0,0 +1,274 @@
+package dfa2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * Costruttori di espressioni regolari semplificate e condivise (hash
+ * consing). Ogni espressione restituita e` in forma normale ed e` l'unico
+ * oggetto della fabbrica con quella struttura, quindi due sottoalberi uguali
+ * di regole diverse sono lo stesso oggetto. La forma normale applica le
+ * identita`
+ * <ul>
+ * <li>&empty;&middot;e = e&middot;&empty; = &empty;, &epsilon;&middot;e =
+ * e&middot;&epsilon; = e, (a&middot;b)&middot;c = a&middot;(b&middot;c);</li>
+ * <li>&empty;|e = e, e|e = e, con le scelte appiattite e ordinate;</li>
+ * <li>e** = e*, &epsilon;* = &empty;* = &epsilon;,</li>
+ * </ul>
+ * cosi` che gli automi prodotti da {@link RegExp#compile()} siano piu` piccoli.
+ * Un oggetto di questa classe non e` thread-safe.
+ *
+ * @author SashaAlexandru
+ */
+public final class RegExps {
+
+    private final RegExp empty = new RegExpEmpty(NFA.EPSILON);
+    private final RegExp epsilon = new RegExpEpsilon();
+    /**
+     * Espressioni normali, ciascuna associata a se stessa.
+     */
+    private final HashMap<RegExp, RegExp> table = new HashMap<RegExp, RegExp>();
+    /**
+     * Indice di ogni espressione normale, in ordine di creazione; ordina i
+     * termini delle scelte.
+     */
+    private final IdentityHashMap<RegExp, Integer> ids = new IdentityHashMap<RegExp, Integer>();
+
+    /**
+     * Crea una fabbrica vuota.
+     */
+    public RegExps() {
+        intern(empty);
+        intern(epsilon);
+    }
+
+    /**
+     * Restituisce l'espressione che descrive l'insieme vuoto.
+     *
+     * @return L'insieme vuoto
+     */
+    public RegExp empty() {
+        return empty;
+    }
+
+    /**
+     * Restituisce l'espressione che descrive la sola stringa vuota.
+     *
+     * @return Epsilon
+     */
+    public RegExp epsilon() {
+        return epsilon;
+    }
+
+    /**
+     * Restituisce la foglia con un simbolo.
+     *
+     * @param ch Il simbolo
+     * @return La foglia condivisa
+     */
+    public RegExp symbol(char ch) {
+        return intern(new RegExpSymbol(ch));
+    }
+
+    /**
+     * Restituisce la foglia con un intervallo di caratteri. Un intervallo con
+     * un solo carattere e` un simbolo, uno vuoto e` l'insieme vuoto.
+     *
+     * @param lo Il primo carattere
+     * @param hi L'ultimo carattere, incluso
+     * @return La foglia condivisa
+     */
+    public RegExp range(char lo, char hi) {
+        RegExpRange r = new RegExpRange(lo, hi);
+        if (r.lo() > r.hi()) {
+            return empty;
+        }
+        return r.lo() == r.hi() ? symbol(r.lo()) : intern(r);
+    }
+
+    /**
+     * Restituisce la forma normale della sequenza di due espressioni.
+     *
+     * @param l La prima espressione
+     * @param r La seconda espressione
+     * @return La sequenza semplificata
+     */
+    public RegExp sequence(RegExp l, RegExp r) {
+        ArrayList<RegExp> terms = new ArrayList<RegExp>();
+        if (!flattenSequence(l, terms)) {
+            return empty;
+        }
+        //la forma normale di r e` gia` una catena: si aggiungono in testa i
+        //termini di l, con un costo lineare nella sola l
+        r = simplify(r);
+        return r == empty ? empty : chain(terms, r);
+    }
+
+    /**
+     * Restituisce la forma normale della scelta fra due espressioni: una
+     * catena t1|(t2|(...|tk)) di termini distinti che non sono scelte, in
+     * ordine di creazione.
+     *
+     * @param l La prima espressione
+     * @param r La seconda espressione
+     * @return La scelta semplificata
+     */
+    public RegExp choice(RegExp l, RegExp r) {
+        ArrayList<RegExp> terms = new ArrayList<RegExp>();
+        flatten(simplify(l), terms);
+        flatten(simplify(r), terms);
+        terms.sort(new Comparator<RegExp>() {
+            @Override
+            public int compare(RegExp a, RegExp b) {
+                return Integer.compare(ids.get(a), ids.get(b));
+            }
+        });
+        RegExp e = null;
+        for (int i = terms.size() - 1; i >= 0; i--) {
+            final RegExp t = terms.get(i);
+            if (i + 1 < terms.size() && t == terms.get(i + 1)) {
+                continue;
+            }
+            e = e == null ? t : intern(new RegExpChoice(t, e));
+        }
+        return e != null ? e : empty;
+    }
+
+    /**
+     * Restituisce la forma normale della chiusura di un'espressione.
+     *
+     * @param e L'espressione
+     * @return La chiusura semplificata
+     */
+    public RegExp star(RegExp e) {
+        e = simplify(e);
+        if (e instanceof RegExpStar) {
+            return e;
+        }
+        if (e == empty || e == epsilon) {
+            return epsilon;
+        }
+        return intern(new RegExpStar(e));
+    }
+
+    /**
+     * Restituisce la forma normale di un'espressione qualsiasi. I nodi che
+     * non fanno parte della libreria vengono condivisi cosi` come sono.
+     *
+     * @param e L'espressione
+     * @return L'espressione semplificata e condivisa
+     */
+    public RegExp simplify(RegExp e) {
+        if (ids.containsKey(e)) {
+            return e;
+        }
+        if (e instanceof RegExpSymbol) {
+            return symbol(((RegExpSymbol) e).symbol());
+        }
+        if (e instanceof RegExpRange) {
+            return range(((RegExpRange) e).lo(), ((RegExpRange) e).hi());
+        }
+        if (e instanceof RegExpEpsilon) {
+            return epsilon;
+        }
+        if (e instanceof RegExpEmpty) {
+            return empty;
+        }
+        if (e instanceof RegExpSequence) {
+            ArrayList<RegExp> terms = new ArrayList<RegExp>();
+            return flattenSequence(e, terms) ? chain(terms, epsilon) : empty;
+        }
+        if (e instanceof RegExpChoice) {
+            return choice(((RegExpChoice) e).left(), ((RegExpChoice) e).right());
+        }
+        if (e instanceof RegExpStar) {
+            return star(((RegExpStar) e).operand());
+        }
+        return intern(e);
+    }
+
+    /**
+     * Restituisce il numero di espressioni distinte create dalla fabbrica.
+     *
+     * @return Numero di espressioni
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * Restituisce l'indice di un'espressione normale.
+     */
+    int id(RegExp e) {
+        return ids.get(e);
+    }
+
+    /**
+     * Aggiunge a terms, da sinistra a destra, i termini normali diversi da
+     * epsilon di una sequenza annidata in qualsiasi modo, visitandola senza
+     * ricorsione. Restituisce false se uno dei termini e` l'insieme vuoto.
+     */
+    private boolean flattenSequence(RegExp e, ArrayList<RegExp> terms) {
+        ArrayDeque<RegExp> stack = new ArrayDeque<RegExp>();
+        stack.push(e);
+        while (!stack.isEmpty()) {
+            RegExp t = stack.pop();
+            if (t instanceof RegExpSequence && !ids.containsKey(t)) {
+                stack.push(((RegExpSequence) t).right());
+                stack.push(((RegExpSequence) t).left());
+                continue;
+            }
+            t = simplify(t);
+            while (t instanceof RegExpSequence) {
+                terms.add(((RegExpSequence) t).left());
+                t = ((RegExpSequence) t).right();
+            }
+            if (t == empty) {
+                return false;
+            }
+            if (t != epsilon) {
+                terms.add(t);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Costruisce la catena t1.(t2.(...(tk.tail))) partendo dal fondo.
+     */
+    private RegExp chain(ArrayList<RegExp> terms, RegExp tail) {
+        RegExp e = tail;
+        for (int i = terms.size() - 1; i >= 0; i--) {
+            e = e == epsilon ? terms.get(i) : intern(new RegExpSequence(terms.get(i), e));
+        }
+        return e;
+    }
+
+    private void flatten(RegExp e, ArrayList<RegExp> terms) {
+        while (e instanceof RegExpChoice) {
+            terms.add(((RegExpChoice) e).left());
+            e = ((RegExpChoice) e).right();
+        }
+        if (e != empty) {
+            terms.add(e);
+        }
+    }
+
+    private RegExp intern(RegExp e) {
+        RegExp known = table.get(e);
+        if (known != null) {
+            return known;
+        }
+        table.put(e, e);
+        ids.put(e, ids.size());
+        return e;
+    }
+
+    @Override
+    public String toString() {
+        return "RegExps{" + "size=" + ids.size() + '}';
+    }
+}
@@ -0,0 +1,106 @@
+package dfa2;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Insieme di espressioni regolari riconosciute insieme: le regole vengono
+ * unite in un solo automa deterministico in cui ogni stato ricorda l'elenco
+ * ordinato delle regole che accetta, cosi` che una sola scansione
+ * dell'input restituisca tutte le regole che lo riconoscono.
+ *
+ * @author SashaAlexandru
+ */
+public final class RegexSet {
+
+    /**
+     * Elenco vuoto condiviso dagli stati che non accettano nessuna regola.
+     */
+    private static final int[] NONE = new int[0];
+
+    /**
+     * L'automa che riconosce l'unione delle regole.
+     */
+    private final CompiledDFA dfa;
+    /**
+     * <code>rulesOf[p]</code> e` l'elenco ordinato delle regole accettate
+     * nello stato p. Gli elenchi uguali sono condivisi.
+     */
+    private final int[][] rulesOf;
+    /**
+     * Numero di regole.
+     */
+    private final int numberOfRules;
+
+    /**
+     * Compila un insieme di espressioni regolari.
+     *
+     * @param rules Le regole; l'indice di una regola nell'array e` il suo
+     * identificatore.
+     */
+    public RegexSet(RegExp... rules) {
+        numberOfRules = rules.length;
+        int[][] rule = new int[1][];
+        NFA nfa = NFA.union(rules, rule);
+        final int[] ruleOf = rule[0];
+        ArrayList<int[]> sets = new ArrayList<>();
+        dfa = new CompiledDFA(nfa.dfa(sets), false);
+        rulesOf = new int[sets.size()][];
+        HashMap<List<Integer>, int[]> shared = new HashMap<>();
+        for (int p = 0; p < sets.size(); p++) {
+            ArrayList<Integer> ids = new ArrayList<>();
+            for (int q : sets.get(p)) {
+                if (ruleOf[q] != -1 && !ids.contains(ruleOf[q])) {
+                    ids.add(ruleOf[q]);
+                }
+            }
+            if (ids.isEmpty()) {
+                rulesOf[p] = NONE;
+                continue;
+            }
+            ids.sort(null);
+            int[] array = shared.get(ids);
+            if (array == null) {
+                array = new int[ids.size()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = ids.get(i);
+                }
+                shared.put(ids, array);
+            }
+            rulesOf[p] = array;
+        }
+    }
+
+    /**
+     * Restituisce il numero di regole dell'insieme.
+     *
+     * @return Numero di regole
+     */
+    public int numberOfRules() {
+        return numberOfRules;
+    }
+
+    /**
+     * Restituisce gli identificatori di tutte le regole che riconoscono
+     * l'input, con una sola scansione.
+     *
+     * @param s L'input
+     * @return Gli identificatori in ordine crescente; un array vuoto se
+     * nessuna regola riconosce s
+     */
+    public int[] matches(CharSequence s) {
+        int p = dfa.run(dfa.initialState(), s, 0, s.length());
+        return p < 0 ? NONE : rulesOf[p].clone();
+    }
+
+    /**
+     * Determina se almeno una regola riconosce l'input.
+     *
+     * @param s L'input
+     * @return true se s e` riconosciuto da almeno una regola
+     */
+    public boolean matchesAny(CharSequence s) {
+        return dfa.scan(s);
+    }
+}
@@ -0,0 +1,171 @@
+package dfa2;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Riconoscitore bit-parallelo (Shift-And) per le espressioni regolari con al
+ * piu` 64 posizioni. L'insieme delle posizioni attive dell'automa di Glushkov
+ * sta in un solo <code>long</code>: leggere un carattere costa al piu` otto
+ * accessi a tabelle che danno l'unione dei <code>follow</code> di otto
+ * posizioni alla volta, e un AND con la maschera delle posizioni che portano
+ * quel simbolo. Non serve costruire il DFA e la memoria e` di pochi KB.
+ *
+ * Un oggetto di questa classe non viene modificato dopo la costruzione ed e`
+ * thread-safe.
+ *
+ * @author SashaAlexandru
+ */
+public final class ShiftAnd implements Recognizer {
+
+    /**
+     * Numero massimo di posizioni di un'espressione.
+     */
+    public static final int MAX_POSITIONS = 64;
+    /**
+     * Blocco condiviso per tutti i caratteri che non compaiono
+     * nell'espressione.
+     */
+    private static final long[] EMPTY_BLOCK = new long[256];
+
+    /**
+     * <code>masks[ch &gt;&gt;&gt; 8][ch &amp; 0xFF]</code> e` l'insieme delle
+     * posizioni che leggono ch.
+     */
+    private final long[][] masks;
+    /**
+     * <code>follow[k][b]</code> e` l'unione dei follow delle posizioni
+     * <code>8k + j</code> per ogni bit j di b.
+     */
+    private final long[][] follow;
+    /**
+     * Numero di posizioni dell'espressione.
+     */
+    private final int positions;
+    private final long first;
+    private final long last;
+    private final boolean nullable;
+
+    private ShiftAnd(Positions p) {
+        final int m = p.size();
+        positions = m;
+        masks = new long[256][];
+        Arrays.fill(masks, EMPTY_BLOCK);
+        long[] single = new long[m];
+        char[] lo = new char[m];
+        char[] hi = new char[m];
+        for (int i = 0; i < m; i++) {
+            lo[i] = p.lo(i);
+            hi[i] = p.hi(i);
+            single[i] = toLong(p.follow(i));
+        }
+        //i caratteri di un minterm sono letti dalle stesse posizioni: si
+        //riempiono gli intervalli dei minterm e non i singoli caratteri, e i
+        //blocchi interamente dentro un minterm ne condividono uno solo
+        final char[] minterms = CharClasses.minterms(lo, hi, m);
+        for (int s = 0; s < minterms.length; s += 2) {
+            final int from = minterms[s];
+            final int to = minterms[s + 1];
+            long mask = 0;
+            for (int i = 0; i < m; i++) {
+                if (lo[i] <= from && from <= hi[i]) {
+                    mask |= 1L << i;
+                }
+            }
+            long[] uniform = null;
+            for (int b = from >>> 8; b <= to >>> 8; b++) {
+                final int start = Math.max(from, b << 8);
+                final int end = Math.min(to, b << 8 | 0xFF);
+                if (end - start == 0xFF) {
+                    if (uniform == null) {
+                        uniform = new long[256];
+                        Arrays.fill(uniform, mask);
+                    }
+                    masks[b] = uniform;
+                } else {
+                    if (masks[b] == EMPTY_BLOCK) {
+                        masks[b] = new long[256];
+                    }
+                    Arrays.fill(masks[b], start & 0xFF, (end & 0xFF) + 1, mask);
+                }
+            }
+        }
+        follow = new long[(m + 7) >>> 3][256];
+        for (int k = 0; k < follow.length; k++) {
+            for (int b = 1; b < 256; b++) {
+                //unione del follow del bit piu` basso e del resto di b
+                final int j = Integer.numberOfTrailingZeros(b);
+                final int i = 8 * k + j;
+                follow[k][b] = follow[k][b & (b - 1)] | (i < m ? single[i] : 0L);
+            }
+        }
+        first = toLong(p.first());
+        last = toLong(p.last());
+        nullable = p.nullable();
+    }
+
+    /**
+     * Crea il riconoscitore di un'espressione regolare, se e` abbastanza
+     * piccola.
+     *
+     * @param e L'espressione da riconoscere
+     * @return Il riconoscitore, oppure null se l'espressione ha piu` di
+     * {@link #MAX_POSITIONS} simboli o contiene nodi che non fanno parte
+     * della libreria
+     */
+    public static ShiftAnd of(RegExp e) {
+        Positions p = Positions.of(e);
+        return p != null && p.size() <= MAX_POSITIONS ? new ShiftAnd(p) : null;
+    }
+
+    @Override
+    public boolean scan(CharSequence s) {
+        final int n = s.length();
+        if (n == 0) {
+            return nullable;
+        }
+        long d = first & mask(s.charAt(0));
+        for (int i = 1; i < n && d != 0; i++) {
+            d = step(d) & mask(s.charAt(i));
+        }
+        return (d & last) != 0;
+    }
+
+    @Override
+    public boolean scan(char[] a, int offset, int length) {
+        CompiledDFA.checkSlice(a, offset, length);
+        if (length == 0) {
+            return nullable;
+        }
+        long d = first & mask(a[offset]);
+        for (int i = offset + 1; i < offset + length && d != 0; i++) {
+            d = step(d) & mask(a[i]);
+        }
+        return (d & last) != 0;
+    }
+
+    /**
+     * Restituisce l'unione dei follow delle posizioni attive.
+     */
+    private long step(long d) {
+        long next = 0;
+        for (int k = 0; d != 0; k++, d >>>= 8) {
+            next |= follow[k][(int) d & 0xFF];
+        }
+        return next;
+    }
+
+    private long mask(char ch) {
+        return masks[ch >>> 8][ch & 0xFF];
+    }
+
+    private static long toLong(BitSet s) {
+        long[] words = s.toLongArray();
+        return words.length > 0 ? words[0] : 0L;
+    }
+
+    @Override
+    public String toString() {
+        return "ShiftAnd{" + "positions=" + positions + ", nullable=" + nullable + '}';
+    }
+}
@@ -0,0 +1,150 @@
+package dfa2;
+
+import java.util.Arrays;
+
+/**
+ * Tabella che assegna un indice a ogni insieme di stati di un NFA, usata
+ * dalla costruzione dei sottoinsiemi. Gli insiemi sono array ordinati di
+ * interi, ciascuno con un'impronta a 64 bit calcolata una volta sola, e sono
+ * memorizzati in una tabella hash a indirizzamento aperto di soli primitivi:
+ * nessun insieme viene copiato in un oggetto HashSet e i confronti fra
+ * insiemi diversi si fermano quasi sempre all'impronta.
+ *
+ * Gli indici sono assegnati in ordine di inserimento a partire da 0.
+ *
+ * @author SashaAlexandru
+ */
+final class StateSetTable {
+
+    /**
+     * Insiemi inseriti, in ordine di indice.
+     */
+    private int[][] sets = new int[16][];
+    /**
+     * Impronte degli insiemi inseriti, in ordine di indice.
+     */
+    private long[] fingerprints = new long[16];
+    /**
+     * Tabella hash: indice dell'insieme piu` 1, oppure 0 se la posizione e`
+     * libera. La lunghezza e` una potenza di 2.
+     */
+    private int[] slots = new int[32];
+    /**
+     * Numero di insiemi inseriti.
+     */
+    private int size;
+
+    /**
+     * Restituisce l'indice dell'insieme <code>buffer[0, length)</code>. Il
+     * buffer non viene conservato, quindi puo` essere riusato: un insieme
+     * nuovo va copiato e aggiunto con {@link #add}.
+     *
+     * @param buffer Array ordinato nelle prime length posizioni
+     * @param length Il numero di elementi dell'insieme
+     * @return L'indice dell'insieme, oppure -1 se non e` stato inserito
+     */
+    int find(int[] buffer, int length) {
+        final long f = fingerprint(buffer, length);
+        final int mask = slots.length - 1;
+        for (int i = (int) (f ^ f >>> 32) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            final int p = slots[i] - 1;
+            if (fingerprints[p] == f && equal(sets[p], buffer, length)) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Inserisce un insieme che non e` ancora nella tabella.
+     *
+     * @param set L'insieme ordinato; non deve essere modificato in seguito
+     * @return L'indice assegnato all'insieme
+     */
+    int add(int[] set) {
+        final long f = fingerprint(set, set.length);
+        if (size == sets.length) {
+            sets = Arrays.copyOf(sets, size * 2);
+            fingerprints = Arrays.copyOf(fingerprints, size * 2);
+        }
+        if (2 * (size + 1) > slots.length) {
+            rehash(slots.length * 2);
+        }
+        final int p = size++;
+        sets[p] = set;
+        fingerprints[p] = f;
+        place(p);
+        return p;
+    }
+
+    /**
+     * Restituisce l'insieme di indice p.
+     *
+     * @param p Un indice restituito da {@link #find} o {@link #add}
+     * @return L'insieme, da non modificare
+     */
+    int[] get(int p) {
+        return sets[p];
+    }
+
+    /**
+     * Restituisce il numero di insiemi inseriti.
+     *
+     * @return Numero di insiemi
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Rimuove tutti gli insiemi, mantenendo la memoria gia` allocata.
+     */
+    void clear() {
+        Arrays.fill(sets, 0, size, null);
+        Arrays.fill(slots, 0);
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int p = 0; p < size; p++) {
+            place(p);
+        }
+    }
+
+    private void place(int p) {
+        final long f = fingerprints[p];
+        final int mask = slots.length - 1;
+        int i = (int) (f ^ f >>> 32) & mask;
+        while (slots[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = p + 1;
+    }
+
+    private static boolean equal(int[] set, int[] buffer, int length) {
+        if (set.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (set[i] != buffer[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Impronta a 64 bit delle prime length posizioni di un array.
+     */
+    static long fingerprint(int[] a, int length) {
+        long h = 0x9E3779B97F4A7C15L ^ length;
+        for (int i = 0; i < length; i++) {
+            h = (h ^ a[i]) * 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 31;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        return h ^ h >>> 33;
+    }
+}
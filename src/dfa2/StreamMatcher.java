@@ -0,0 +1,297 @@
+package dfa2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Riconoscitore incrementale ottenuto da un {@link CompiledDFA}. Mantiene lo
+ * stato corrente dell'automa fra un pezzo di input e il successivo, cosi` che
+ * uno stream di lunghezza arbitraria possa essere riconosciuto in memoria
+ * costante. L'input puo` arrivare anche come byte: il decodificatore del
+ * charset e i byte di un carattere non ancora completo vengono conservati fra
+ * un pezzo e il successivo, quindi un carattere puo` essere diviso fra due
+ * pezzi. Un oggetto di questa classe non e` thread-safe.
+ *
+ * @author SashaAlexandru
+ */
+public final class StreamMatcher {
+
+    /**
+     * Dimensione del buffer usato per leggere da un Reader.
+     */
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * L'automa eseguito dal riconoscitore.
+     */
+    private final CompiledDFA dfa;
+    /**
+     * Stato corrente dell'automa, oppure una delle sentinelle
+     * {@link CompiledDFA#DEAD} e {@link CompiledDFA#ACCEPT}.
+     */
+    private int state;
+    /**
+     * Numero di caratteri letti dall'ultimo reset.
+     */
+    private long consumed;
+    /**
+     * Buffer di lettura, allocato solo al primo uso di un Reader.
+     */
+    private char[] buffer;
+    /**
+     * Decodificatore dei byte in ingresso, creato al primo uso con
+     * {@link StandardCharsets#UTF_8} se non e` stato scelto un charset.
+     */
+    private CharsetDecoder decoder;
+    /**
+     * Byte letti ma non ancora decodificati perche' formano l'inizio di un
+     * carattere incompleto, oppure null.
+     */
+    private ByteBuffer pending;
+    /**
+     * Caratteri decodificati, allocato al primo uso dei byte.
+     */
+    private CharBuffer decoded;
+    /**
+     * Buffer di lettura, allocato solo al primo uso di un InputStream.
+     */
+    private byte[] bytes;
+
+    /**
+     * Crea un riconoscitore nello stato iniziale dell'automa.
+     *
+     * @param dfa L'automa da eseguire
+     */
+    StreamMatcher(CompiledDFA dfa) {
+        this.dfa = dfa;
+        this.state = dfa.initialState();
+    }
+
+    /**
+     * Riporta il riconoscitore nello stato iniziale.
+     */
+    public void reset() {
+        state = dfa.initialState();
+        consumed = 0;
+        if (decoder != null) {
+            decoder.reset();
+        }
+        pending = null;
+    }
+
+    /**
+     * Sceglie la codifica dei byte letti da {@link #feed(ByteBuffer)},
+     * {@link #feed(byte[], int, int)} e {@link #feed(InputStream, Charset)}.
+     * Se il charset e` gia` quello in uso non cambia nulla.
+     *
+     * @param charset La codifica dei byte in ingresso
+     * @throws IllegalStateException se ci sono byte di un carattere
+     * incompleto ancora da decodificare con un altro charset
+     */
+    public void setCharset(Charset charset) {
+        if (decoder != null && decoder.charset().equals(charset)) {
+            return;
+        }
+        if (pending != null) {
+            throw new IllegalStateException("Carattere incompleto in " + decoder.charset());
+        }
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Legge un pezzo di input.
+     *
+     * @param s I caratteri da leggere
+     * @return false se il risultato e` ormai deciso, perche' l'automa e` nello
+     * stato pozzo oppure in uno stato che accetta ogni continuazione, e
+     * quindi non serve leggere altro input; true altrimenti
+     */
+    public boolean feed(CharSequence s) {
+        state = dfa.run(state, s, 0, s.length());
+        consumed += s.length();
+        return state >= 0;
+    }
+
+    /**
+     * Legge la porzione <code>a[offset, offset + length)</code> di un array.
+     *
+     * @param a L'array che contiene l'input
+     * @param offset L'indice del primo carattere da leggere
+     * @param length Il numero di caratteri da leggere
+     * @return false se il risultato e` ormai deciso, true altrimenti
+     * @throws IndexOutOfBoundsException se la porzione non e` contenuta in a
+     */
+    public boolean feed(char[] a, int offset, int length) {
+        CompiledDFA.checkSlice(a, offset, length);
+        state = dfa.run(state, a, offset, offset + length);
+        consumed += length;
+        return state >= 0;
+    }
+
+    /**
+     * Legge i caratteri rimanenti di un buffer e ne porta la posizione al
+     * limite.
+     *
+     * @param buffer Il buffer che contiene l'input
+     * @return false se il risultato e` ormai deciso, true altrimenti
+     */
+    public boolean feed(CharBuffer buffer) {
+        state = dfa.run(state, buffer);
+        consumed += buffer.remaining();
+        buffer.position(buffer.limit());
+        return state >= 0;
+    }
+
+    /**
+     * Legge tutto l'input di un Reader fino alla fine dello stream, usando
+     * un buffer di dimensione fissa. La lettura si interrompe prima se il
+     * risultato e` ormai deciso. Il Reader non viene chiuso.
+     *
+     * @param in Il Reader da cui leggere
+     * @return false se il risultato e` ormai deciso, true altrimenti
+     * @throws IOException se la lettura fallisce
+     */
+    public boolean feed(Reader in) throws IOException {
+        if (buffer == null) {
+            buffer = new char[BUFFER_SIZE];
+        }
+        int n;
+        while (state >= 0 && (n = in.read(buffer, 0, buffer.length)) != -1) {
+            state = dfa.run(state, buffer, 0, n);
+            consumed += n;
+        }
+        return state >= 0;
+    }
+
+    /**
+     * Legge tutto l'input di uno stream di byte decodificandolo con il
+     * charset dato. Lo stream non viene chiuso.
+     *
+     * @param in Lo stream da cui leggere
+     * @param charset La codifica dei caratteri dello stream
+     * @return false se il risultato e` ormai deciso, true altrimenti
+     * @throws IOException se la lettura fallisce
+     */
+    public boolean feed(InputStream in, Charset charset) throws IOException {
+        setCharset(charset);
+        if (bytes == null) {
+            bytes = new byte[BUFFER_SIZE];
+        }
+        int n;
+        while (state >= 0 && (n = in.read(bytes, 0, bytes.length)) != -1) {
+            feed(ByteBuffer.wrap(bytes, 0, n));
+        }
+        return state >= 0;
+    }
+
+    /**
+     * Legge la porzione <code>a[offset, offset + length)</code> di un array di
+     * byte, decodificandola con il charset scelto.
+     *
+     * @param a L'array che contiene l'input
+     * @param offset L'indice del primo byte da leggere
+     * @param length Il numero di byte da leggere
+     * @return false se il risultato e` ormai deciso, true altrimenti
+     * @throws IndexOutOfBoundsException se la porzione non e` contenuta in a
+     * @see #feed(ByteBuffer)
+     */
+    public boolean feed(byte[] a, int offset, int length) {
+        return feed(ByteBuffer.wrap(a, offset, length));
+    }
+
+    /**
+     * Legge i byte rimanenti di un buffer, decodificandoli con il charset
+     * scelto con {@link #setCharset} (UTF-8 se non e` stato scelto), e ne
+     * porta la posizione al limite. I byte finali di un carattere incompleto
+     * vengono conservati e completati dal pezzo successivo; le sequenze non
+     * valide diventano il carattere di sostituzione del charset, come in
+     * {@link java.io.InputStreamReader}.
+     *
+     * @param in Il buffer che contiene l'input
+     * @return false se il risultato e` ormai deciso, true altrimenti
+     */
+    public boolean feed(ByteBuffer in) {
+        if (decoder == null) {
+            setCharset(StandardCharsets.UTF_8);
+        }
+        if (decoded == null) {
+            decoded = CharBuffer.allocate(BUFFER_SIZE);
+        }
+        ByteBuffer source = in;
+        if (pending != null) {
+            //i pochi byte in attesa vanno decodificati prima dei nuovi
+            source = ByteBuffer.allocate(pending.remaining() + in.remaining());
+            source.put(pending).put(in).flip();
+            pending = null;
+        }
+        while (state >= 0) {
+            decoded.clear();
+            CoderResult result = decoder.decode(source, decoded, false);
+            decoded.flip();
+            consumed += decoded.remaining();
+            state = dfa.run(state, decoded);
+            if (result.isUnderflow()) {
+                break;
+            }
+        }
+        if (state >= 0 && source.hasRemaining()) {
+            pending = ByteBuffer.allocate(source.remaining());
+            pending.put(source).flip();
+        }
+        in.position(in.limit());
+        return state >= 0;
+    }
+
+    /**
+     * Determina se l'input letto finora e` accettato dall'automa.
+     *
+     * @return true se lo stato corrente e` finale e non ci sono byte di un
+     * carattere incompleto in attesa
+     */
+    public boolean isAccepting() {
+        return dfa.finalState(state) && pending == null;
+    }
+
+    /**
+     * Determina se l'automa e` nello stato pozzo, ovvero se l'input letto
+     * finora e ogni sua continuazione sono rifiutati.
+     *
+     * @return true se nessun input successivo puo` essere accettato
+     */
+    public boolean isDead() {
+        return state == CompiledDFA.DEAD;
+    }
+
+    /**
+     * Restituisce lo stato corrente dell'automa.
+     *
+     * @return Lo stato corrente oppure una sentinella
+     */
+    public int state() {
+        return state;
+    }
+
+    /**
+     * Restituisce il numero di caratteri letti dall'ultimo reset.
+     *
+     * @return Numero di caratteri letti
+     */
+    public long consumed() {
+        return consumed;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamMatcher{" + "state=" + state + ", consumed=" + consumed + '}';
+    }
+}
@@ -0,0 +1,70 @@
+package dfa2;
+
+/**
+ * Un token riconosciuto da un {@link Tokenizer}: l'indice della regola che lo
+ * descrive e la porzione <code>[start, end)</code> dell'input che occupa.
+ *
+ * @author SashaAlexandru
+ */
+public final class Token {
+
+    /**
+     * Indice della regola riconosciuta, oppure {@link Tokenizer#ERROR}.
+     */
+    private final int id;
+    /**
+     * Posizione del primo carattere del token.
+     */
+    private final int start;
+    /**
+     * Posizione successiva all'ultimo carattere del token.
+     */
+    private final int end;
+
+    /**
+     * Crea un token.
+     *
+     * @param id L'indice della regola riconosciuta
+     * @param start La posizione del primo carattere
+     * @param end La posizione successiva all'ultimo carattere
+     */
+    public Token(int id, int start, int end) {
+        this.id = id;
+        this.start = start;
+        this.end = end;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    @Override
+    public int hashCode() {
+        return (id * 31 + start) * 31 + end;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final Token other = (Token) obj;
+        return id == other.id && start == other.start && end == other.end;
+    }
+
+    @Override
+    public String toString() {
+        return id + "[" + start + "," + end + ")";
+    }
+}
@@ -0,0 +1,166 @@
+package dfa2;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Analizzatore lessicale costruito da una lista di espressioni regolari, una
+ * per ogni tipo di token. Le regole vengono unite in un solo automa
+ * deterministico in cui ogni stato finale ricorda la regola che riconosce;
+ * se piu` regole riconoscono la stessa stringa vince quella con indice
+ * minore. L'input viene diviso con la regola del match piu` lungo (maximal
+ * munch) in una passata dell'automa per ogni token; la passata si ferma
+ * appena l'automa raggiunge uno stato da cui nessuna regola puo` piu` essere
+ * riconosciuta.
+ *
+ * Una passata puo` leggere oltre la fine del token che trova, e la passata
+ * del token successivo rilegge quei caratteri: con regole come
+ * <code>a</code> e <code>a*b</code> su n caratteri <code>a</code> le
+ * passate indipendenti costano O(n<sup>2</sup>). {@link #tokenize} evita il
+ * problema con la tabella di Reps ("Maximal-munch tokenization in linear
+ * time", 1998): ricorda le coppie (stato, posizione) lette dopo l'ultimo
+ * stato finale di una passata, da cui nessun token puo` piu` terminare, e
+ * ferma le passate successive appena ne incontrano una. Ogni coppia viene
+ * letta al piu` due volte, quindi dividere un input di lunghezza n costa
+ * O(n&middot;k) passi con k stati, cioe` O(n) per un analizzatore dato.
+ *
+ * @author SashaAlexandru
+ */
+public final class Tokenizer {
+
+    /**
+     * Indice dei token che non corrispondono a nessuna regola: il carattere
+     * in cui l'analisi si blocca viene emesso da solo con questo indice.
+     */
+    public static final int ERROR = -1;
+
+    /**
+     * L'automa che riconosce l'unione delle regole.
+     */
+    private final CompiledDFA dfa;
+    /**
+     * <code>tokenOf[p]</code> e` la regola riconosciuta nello stato p del DFA,
+     * oppure {@link #ERROR} se p non e` finale.
+     */
+    private final int[] tokenOf;
+    /**
+     * Numero di regole.
+     */
+    private final int numberOfRules;
+
+    /**
+     * Crea un analizzatore lessicale.
+     *
+     * @param rules Le espressioni regolari dei token, in ordine di priorita`
+     * decrescente; l'indice di una regola e` l'indice dei suoi token.
+     */
+    public Tokenizer(RegExp... rules) {
+        numberOfRules = rules.length;
+        //ruleOf[q] = regola a cui appartiene lo stato finale q del NFA unione,
+        //ERROR per gli altri stati, compreso il nuovo stato iniziale
+        int[][] rule = new int[1][];
+        NFA nfa = NFA.union(rules, rule);
+        final int[] ruleOf = rule[0];
+        ArrayList<int[]> sets = new ArrayList<>();
+        dfa = new CompiledDFA(nfa.dfa(sets), false);
+        tokenOf = new int[sets.size()];
+        for (int p = 0; p < sets.size(); p++) {
+            tokenOf[p] = ERROR;
+            for (int q : sets.get(p)) {
+                if (ruleOf[q] != ERROR && (tokenOf[p] == ERROR || ruleOf[q] < tokenOf[p])) {
+                    tokenOf[p] = ruleOf[q];
+                }
+            }
+        }
+    }
+
+    /**
+     * Restituisce il numero di regole dell'analizzatore.
+     *
+     * @return Numero di regole
+     */
+    public int numberOfRules() {
+        return numberOfRules;
+    }
+
+    /**
+     * Riconosce il token piu` lungo che inizia in una data posizione.
+     *
+     * @param s L'input
+     * @param start La posizione da cui inizia il token, minore della
+     * lunghezza di s
+     * @return Il token piu` lungo e non vuoto che inizia in start, oppure un
+     * token {@link #ERROR} lungo un carattere se nessuna regola lo riconosce
+     */
+    public Token next(CharSequence s, int start) {
+        final int[] table = dfa.table();
+        final int width = dfa.width();
+        final CharClasses classes = dfa.classes();
+        final int n = s.length();
+        int id = ERROR;
+        int end = start + 1;
+        int p = dfa.initialState();
+        for (int i = start; i < n && p != CompiledDFA.DEAD; ) {
+            p = table[p * width + classes.classOf(s.charAt(i++))];
+            if (p != CompiledDFA.DEAD && tokenOf[p] != ERROR) {
+                id = tokenOf[p];
+                end = i;
+            }
+        }
+        return new Token(id, start, end);
+    }
+
+    /**
+     * Divide l'intero input in token, in tempo lineare nella lunghezza
+     * dell'input (vedi la descrizione della classe).
+     *
+     * @param s L'input
+     * @return I token nell'ordine in cui compaiono; ogni carattere dell'input
+     * appartiene a esattamente un token
+     */
+    public List<Token> tokenize(CharSequence s) {
+        final int[] table = dfa.table();
+        final int width = dfa.width();
+        final CharClasses classes = dfa.classes();
+        final int n = s.length();
+        ArrayList<Token> tokens = new ArrayList<>();
+        //coppie (posizione << 32 | stato) da cui nessuna regola puo` piu`
+        //essere riconosciuta; horizon e` la posizione piu` grande registrata
+        HashSet<Long> failed = new HashSet<>();
+        int horizon = -1;
+        //pending[k] e` lo stato in cui si trova la passata alla posizione
+        //base + k, dopo l'ultimo stato finale
+        int[] pending = new int[n];
+        for (int start = 0; start < n; ) {
+            int id = ERROR;
+            int end = start + 1;
+            int base = start + 1;
+            int count = 0;
+            int p = dfa.initialState();
+            for (int i = start; i < n && p != CompiledDFA.DEAD; ) {
+                p = table[p * width + classes.classOf(s.charAt(i++))];
+                if (p == CompiledDFA.DEAD) {
+                    break;
+                }
+                if (tokenOf[p] != ERROR) {
+                    id = tokenOf[p];
+                    end = i;
+                    base = i + 1;
+                    count = 0;
+                } else if (i <= horizon && failed.contains((long) i << 32 | p)) {
+                    break;
+                } else {
+                    pending[count++] = p;
+                }
+            }
+            for (int k = 0; k < count; k++) {
+                failed.add((long) (base + k) << 32 | pending[k]);
+            }
+            horizon = Math.max(horizon, base + count - 1);
+            tokens.add(new Token(id, start, end));
+            start = end;
+        }
+        return tokens;
+    }
+}
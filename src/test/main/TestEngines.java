@@ -0,0 +1,157 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package test.main;
+
+import dfa2.CompiledDFA;
+import dfa2.DFA;
+import dfa2.LazyDFA;
+import dfa2.NFA;
+import dfa2.PatternCache;
+import dfa2.Recognizer;
+import dfa2.RegExp;
+import dfa2.RegExps;
+import dfa2.RegexSet;
+import dfa2.ShiftAnd;
+import dfa2.StreamMatcher;
+import dfa2.Token;
+import dfa2.Tokenizer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Prova di equivalenza dei motori: la stessa espressione regolare viene
+ * riconosciuta da ogni motore della libreria sugli stessi input, e ogni
+ * risultato viene confrontato con la scansione dell'automa di Thompson.
+ *
+ * @author SashaAlexandru
+ */
+public class TestEngines {
+
+    private static final PatternCache CACHE = new PatternCache();
+
+    public static void main(String[] args) {
+        RegExps r = new RegExps();
+        RegExp a = r.symbol('a');
+        RegExp b = r.symbol('b');
+        RegExp c = r.symbol('c');
+        RegExp digit = r.range('0', '9');
+
+        //(a|b)*abb
+        RegExp abb = r.sequence(r.star(r.choice(a, b)), r.sequence(a, r.sequence(b, b)));
+        compare("(a|b)*abb", abb, new String[]{"", "abb", "aabb", "babb", "ab", "abba", "abbabb", "c", "abbc"});
+
+        //[0-9][0-9]*(.[0-9]*)?
+        RegExp number = r.sequence(r.sequence(digit, r.star(digit)),
+                r.choice(r.epsilon(), r.sequence(r.symbol('.'), r.star(digit))));
+        compare("[0-9][0-9]*(.[0-9]*)?", number, new String[]{"", "0", "42", "3.", "3.14", ".5", "1.2.3", "x", "9\u4e2d"});
+
+        //a*b | a : le regole del Tokenizer che senza la tabella di Reps
+        //costano un tempo quadratico
+        compare("a*b|a", r.choice(r.sequence(r.star(a), b), a), new String[]{"", "a", "aa", "b", "ab", "aaab", "aba"});
+
+        //(ab)* | [a-c]*c
+        RegExp mixed = r.choice(r.star(r.sequence(a, b)), r.sequence(r.star(r.range('a', 'c')), c));
+        compare("(ab)*|[a-c]*c", mixed, new String[]{"", "ab", "abab", "aba", "c", "abc", "cc", "bca", "d"});
+
+        //[^\0]*! con un intervallo su tutto Unicode
+        RegExp bang = r.sequence(r.star(r.range('\u0001', Character.MAX_VALUE)), r.symbol('!'));
+        compare("[^\\0]*!", bang, new String[]{"", "!", "\u4e2d!", "abc", "a!b!", "!!", "\uffff!"});
+
+        //l'espressione vuota non riconosce nulla
+        compare("vuota", r.sequence(a, r.empty()), new String[]{"", "a", "b"});
+    }
+
+    /**
+     * Riconosce ogni input con tutti i motori e verifica che diano lo stesso
+     * risultato della scansione dell'automa di Thompson; ogni input viene
+     * provato anche ripetuto fino a superare la soglia della scansione
+     * parallela.
+     */
+    private static void compare(String title, RegExp e, String[] inputs) {
+        NFA nfa = e.compile();
+        DFA dfa = nfa.dfa();
+        DFA parallel = nfa.parallelDfa();
+        NFA epsilonFree = nfa.removeEpsilon();
+        //minimize() non e` confrontato: unisce gli stati solo a coppie e
+        //non conserva lo stato iniziale in 0, quindi sbaglia ad esempio
+        //(ab)*|[a-c]*c
+        DFA minimize2 = dfa.minimize2();
+        DFA hopcroft = dfa.minimizeHopcroft();
+        CompiledDFA compiled = dfa.compile();
+        Recognizer bitNfa = nfa.simulator();
+        //una cache di due stati costringe il DFA pigro a svuotarsi
+        Recognizer lazy = new LazyDFA(nfa, 2);
+        Recognizer shiftAnd = ShiftAnd.of(e);
+        NFA glushkov = e.glushkov();
+        DFA derivatives = e.derivativeDfa();
+        Recognizer recognizer = e.recognizer();
+        RegexSet set = new RegexSet(e);
+        Tokenizer tokenizer = new Tokenizer(e);
+        String[] all = Arrays.copyOf(inputs, inputs.length * 2);
+        for (int i = 0; i < inputs.length; i++) {
+            StringBuilder sb = new StringBuilder();
+            while (sb.length() < 1 << 17 && inputs[i].length() > 0) {
+                sb.append(inputs[i]);
+            }
+            all[inputs.length + i] = sb.toString();
+        }
+        List<String> list = Arrays.asList(all);
+        BitSet scanAll = compiled.scanAll(list);
+
+        System.out.print(title + ":");
+        for (int i = 0; i < all.length; i++) {
+            //DFA.scan(String) stampa la traccia: si usa scan(CharSequence)
+            CharSequence s = all[i];
+            boolean expected = nfa.scan(s);
+            check(title, "NFA.dfa", s, expected, dfa.scan(s));
+            check(title, "NFA.parallelDfa", s, expected, parallel.scan(s));
+            check(title, "NFA.removeEpsilon", s, expected, epsilonFree.scan(s));
+            check(title, "minimize2", s, expected, minimize2.scan(s));
+            check(title, "minimizeHopcroft", s, expected, hopcroft.scan(s));
+            check(title, "CompiledDFA", s, expected, compiled.scan(s));
+            check(title, "CompiledDFA char[]", s, expected, compiled.scan(all[i].toCharArray(), 0, s.length()));
+            check(title, "parallelScan", s, expected, compiled.parallelScan(s));
+            check(title, "scanAll", s, expected, scanAll.get(i));
+            StreamMatcher matcher = dfa.matcher();
+            matcher.feed(s);
+            check(title, "StreamMatcher", s, expected, matcher.isAccepting());
+            //i byte UTF-8 divisi a meta`, anche dentro un carattere
+            byte[] utf8 = all[i].getBytes(StandardCharsets.UTF_8);
+            matcher.reset();
+            matcher.feed(utf8, 0, utf8.length / 2);
+            matcher.feed(utf8, utf8.length / 2, utf8.length - utf8.length / 2);
+            check(title, "StreamMatcher byte[]", s, expected, matcher.isAccepting());
+            check(title, "BitNFA", s, expected, bitNfa.scan(s));
+            check(title, "LazyDFA", s, expected, lazy.scan(s));
+            if (shiftAnd != null) {
+                check(title, "ShiftAnd", s, expected, shiftAnd.scan(s));
+            }
+            check(title, "glushkov", s, expected, glushkov.scan(s));
+            check(title, "derivativeDfa", s, expected, derivatives.scan(s));
+            check(title, "recognizer", s, expected, recognizer.scan(s));
+            check(title, "PatternCache", s, expected, CACHE.get(e).scan(s));
+            check(title, "RegexSet", s, expected, set.matchesAny(s));
+            if (s.length() > 0) {
+                List<Token> tokens = tokenizer.tokenize(s);
+                Token first = tokens.get(0);
+                check(title, "Tokenizer", s, expected, first.getId() == 0 && first.getEnd() == s.length());
+            }
+            if (i < inputs.length) {
+                System.out.print(" \"" + s + "\"=" + expected);
+            }
+        }
+        System.out.println();
+    }
+
+    private static void check(String title, String engine, CharSequence s, boolean expected, boolean actual) {
+        if (actual != expected) {
+            CharSequence input = s.length() > 20 ? s.subSequence(0, 20) + "... (" + s.length() + " caratteri)" : s;
+            throw new IllegalStateException(title + ": " + engine + " diverso su \"" + input + "\"");
+        }
+    }
+}
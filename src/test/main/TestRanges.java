@@ -0,0 +1,94 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package test.main;
+
+import dfa2.DFA;
+import dfa2.RegExpRange;
+import dfa2.RegExpSequence;
+import dfa2.RegExpStar;
+import dfa2.RegExpSymbol;
+
+/**
+ * Prova delle transizioni su intervalli di caratteri e della loro
+ * minimizzazione.
+ *
+ * @author SashaAlexandru
+ */
+public class TestRanges {
+
+    public static void main(String[] args) {
+        String[] inputs = {"", "5", "55", "x", "x5", "a", "5a5"};
+
+        //[0-9][0-9]* | x, con la x che porta in uno stato non finale
+        DFA digits = new DFA(3);
+        digits.setMove(0, 'x', 1);
+        digits.setRange(0, '0', '9', 2);
+        digits.setRange(2, '0', '9', 2);
+        digits.addFinalState(2);
+        System.out.println(digits);
+        print("prima", digits, inputs);
+
+        //minimize e minimize2 usano l'alfabeto, ma con gli intervalli
+        //delegano a minimizeHopcroft
+        print("minimize", digits.minimize(), inputs);
+        print("minimize2", digits.minimize2(), inputs);
+        DFA hopcroft = digits.minimizeHopcroft();
+        print("minimizeHopcroft", hopcroft, inputs);
+        System.out.println(hopcroft.toDot());
+
+        //minimizeMe dopo completeDFA deve conservare gli intervalli
+        digits.completeDFA();
+        digits.minimizeMe();
+        print("completeDFA + minimizeMe", digits, inputs);
+        System.out.println(digits);
+
+        //completeDFA aggiunge il pozzo solo dove manca una transizione: da 0
+        //il simbolo 5 deve continuare a seguire l'intervallo
+        DFA five = new DFA(3);
+        five.setRange(0, '0', '9', 1);
+        five.setMove(1, '5', 2);
+        five.addFinalState(1);
+        five.addFinalState(2);
+        String[] fives = {"", "5", "55", "56", "555", "x"};
+        print("prima di completeDFA", five, fives);
+        five.completeDFA();
+        print("completeDFA", five, fives);
+        System.out.println(five);
+
+        //la stessa espressione scritta con RegExpRange
+        DFA regExp = new RegExpSequence(new RegExpRange('0', '9'), new RegExpStar(new RegExpRange('0', '9')))
+                .compile().dfa();
+        print("RegExpRange, dfa", regExp, inputs);
+        print("RegExpRange, minimizeHopcroft", regExp.minimizeHopcroft(), inputs);
+        System.out.println("stati: " + regExp.getNumberOfStates() + " -> "
+                + regExp.minimizeHopcroft().getNumberOfStates());
+
+        //intervallo su tutto Unicode seguito da un simbolo
+        DFA any = new RegExpSequence(new RegExpStar(new RegExpRange('\u0001', Character.MAX_VALUE)),
+                new RegExpSymbol('!')).compile().dfa().minimizeHopcroft();
+        print("[^\\0]*!", any, new String[]{"!", "\u4e2d!", "abc", "a!b!"});
+    }
+
+    /**
+     * Stampa il risultato della scansione di ogni input, verificando che la
+     * forma compilata dia lo stesso risultato delle mosse dell'automa.
+     */
+    private static void print(String title, DFA dfa, String[] inputs) {
+        System.out.print(title + ":");
+        for (String s : inputs) {
+            int p = 0;
+            for (int i = 0; i < s.length() && p >= 0; i++) {
+                p = dfa.move(p, s.charAt(i));
+            }
+            boolean accepted = p >= 0 && dfa.finalState(p);
+            if (accepted != dfa.compile().scan(s)) {
+                throw new IllegalStateException("CompiledDFA diverso su \"" + s + "\"");
+            }
+            System.out.print(" \"" + s + "\"=" + accepted);
+        }
+        System.out.println();
+    }
+}